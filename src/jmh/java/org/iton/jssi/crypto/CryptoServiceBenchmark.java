@@ -0,0 +1,128 @@
+/*
+ *
+ *  The MIT License
+ *
+ *  Copyright 2019 ITON Solutions.
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+
+package org.iton.jssi.crypto;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import org.libsodium.jni.NaCl;
+import org.libsodium.jni.SodiumException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of the CryptoService operations by payload size, with and without the
+ * crypto type suffix on the verkeys. Run with {@code -prof gc} (the default of the
+ * gradle jmh task) for the allocation per operation.
+ *
+ * @author ITON Solutions
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CryptoServiceBenchmark {
+    
+    @Param({"64", "1024", "65536", "1048576", "16777216"})
+    public int size;
+    
+    @Param({"true", "false"})
+    public boolean suffix;
+    
+    CryptoService service;
+    Keys sender;
+    Keys receiver;
+    byte[] data;
+    byte[] signature;
+    byte[] sealed;
+    CryptoBox box;
+    
+    @Setup
+    public void setUp() throws SodiumException, CryptoException {
+        NaCl.sodium();
+        service = new CryptoService();
+        sender = keys(service.createKeys(new KeyInfo("00000000000000000000000000000My1")));
+        receiver = keys(service.createKeys(new KeyInfo("00000000000000000000000000000My2")));
+        
+        data = new byte[size];
+        Arrays.fill(data, (byte) 0x2A);
+        signature = service.sign(data, sender);
+        sealed = service.cryptoBoxSeal(receiver, data);
+        box = service.cryptoBox(data, sender, receiver);
+    }
+    
+    private Keys keys(Keys keys){
+        if(!suffix){
+            keys.verkey = keys.verkey.split(":")[0];
+        }
+        return keys;
+    }
+    
+    @Benchmark
+    public byte[] sign() throws SodiumException, CryptoException {
+        return service.sign(data, sender);
+    }
+    
+    @Benchmark
+    public boolean verify() throws SodiumException, CryptoException {
+        return service.verify(data, signature, sender);
+    }
+    
+    @Benchmark
+    public CryptoBox cryptoBox() throws SodiumException, CryptoException {
+        return service.cryptoBox(data, sender, receiver);
+    }
+    
+    @Benchmark
+    public byte[] cryptoBoxOpen() throws SodiumException, CryptoException {
+        return service.cryptoBoxOpen(box.cipher, box.nonce, receiver, sender);
+    }
+    
+    @Benchmark
+    public byte[] cryptoBoxSeal() throws SodiumException, CryptoException {
+        return service.cryptoBoxSeal(receiver, data);
+    }
+    
+    @Benchmark
+    public byte[] cryptoBoxSealOpen() throws SodiumException, CryptoException {
+        return service.cryptoBoxSealOpen(receiver, sealed);
+    }
+    
+    @Benchmark
+    public CryptoDetached encryptPlaintext() throws SodiumException {
+        return service.encryptPlaintext(data, null, sender);
+    }
+}
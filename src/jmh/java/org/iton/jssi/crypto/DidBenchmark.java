@@ -0,0 +1,100 @@
+/*
+ *
+ *  The MIT License
+ *
+ *  Copyright 2019 ITON Solutions.
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+
+package org.iton.jssi.crypto;
+
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.iton.jssi.did.Did;
+import org.iton.jssi.did.MyDidInfo;
+import org.iton.jssi.util.Pair;
+import org.libsodium.jni.NaCl;
+import org.libsodium.jni.SodiumException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of key and DID creation, single threaded and on one thread per core.
+ *
+ * @author ITON Solutions
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DidBenchmark {
+    
+    CryptoService service;
+    MyDidInfo random;
+    MyDidInfo seeded;
+    DidProvisioner provisioner;
+    
+    @Setup
+    public void setUp() {
+        NaCl.sodium();
+        service = new CryptoService();
+        random = new MyDidInfo(null, null);
+        seeded = new MyDidInfo(null, "00000000000000000000000000000My1");
+        provisioner = new DidProvisioner(service);
+    }
+    
+    @Benchmark
+    public Keys createKeys() throws SodiumException {
+        return service.createKeys(null);
+    }
+    
+    @Benchmark
+    public Pair<Did, Keys> createMyDid() throws SodiumException {
+        return service.createMyDid(random);
+    }
+    
+    @Benchmark
+    public Pair<Did, Keys> createMyDidSeed() throws SodiumException {
+        return service.createMyDid(seeded);
+    }
+    
+    // DIDs per second is 1024 times the score
+    @Benchmark
+    public long provision() throws CryptoException {
+        return provisioner.provision(Stream.generate(() -> random).limit(1024), pair -> {});
+    }
+    
+    @Benchmark
+    @Threads(Threads.MAX)
+    public Pair<Did, Keys> createMyDidThreads() throws SodiumException {
+        return service.createMyDid(random);
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ *
+ *  The MIT License
+ *
+ *  Copyright 2019 ITON Solutions.
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+
+package org.iton.jssi.crypto.util;
+
+import java.util.concurrent.TimeUnit;
+import org.libsodium.api.Crypto_randombytes;
+import org.libsodium.jni.NaCl;
+import org.libsodium.jni.SodiumException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Nonces per second drawn from the native generator one call each (before) and from the
+ * {@link RandomPool} (after).
+ *
+ * @author ITON Solutions
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RandomPoolBenchmark {
+    
+    // crypto_box and AEAD nonce, Ed25519 seed
+    @Param({"24", "12", "32"})
+    int size;
+    
+    byte[] nonce;
+    
+    @Setup
+    public void setUp() {
+        NaCl.sodium();
+        nonce = new byte[size];
+    }
+    
+    @Benchmark
+    public byte[] nativeRandom() throws SodiumException {
+        Crypto_randombytes.randombytes(nonce);
+        return nonce;
+    }
+    
+    @Benchmark
+    public byte[] pool() throws SodiumException {
+        RandomPool.nextBytes(nonce);
+        return nonce;
+    }
+    
+    @Benchmark
+    @Threads(Threads.MAX)
+    public byte[] nativeRandomThreads() throws SodiumException {
+        Crypto_randombytes.randombytes(nonce);
+        return nonce;
+    }
+    
+    @Benchmark
+    @Threads(Threads.MAX)
+    public byte[] poolThreads() throws SodiumException {
+        RandomPool.nextBytes(nonce);
+        return nonce;
+    }
+}
@@ -0,0 +1,265 @@
+/*
+ *
+ *  The MIT License
+ *
+ *  Copyright 2019 ITON Solutions.
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+
+package org.iton.jssi.crypto;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import org.iton.jssi.did.Did;
+import org.iton.jssi.did.MyDidInfo;
+import org.iton.jssi.util.Pair;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Asynchronous facade of {@link CryptoService}. Every operation runs on a dedicated bounded
+ * executor and returns a {@link CompletableFuture} completed with the result or with the
+ * exception thrown by the service. By default the executor has one daemon thread per core
+ * and a bounded queue, so crypto load cannot take over the threads of the rest of the
+ * application; what happens when the queue is full is set by the {@link RejectionPolicy}.
+ * A caller supplied {@link Executor} can be used instead, it is not shut down on close.
+ *
+ * @author ITON Solutions
+ */
+public class AsyncCryptoService implements AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AsyncCryptoService.class);
+
+    public static final int DEFAULT_QUEUE_CAPACITY = 1024;
+
+    public enum RejectionPolicy {
+        // the returned future fails with a RejectedExecutionException
+        ABORT,
+        // the operation runs on the calling thread, slowing the producer down
+        CALLER_RUNS
+    }
+
+    private final CryptoService service;
+    private final Executor executor;
+    private final ThreadPoolExecutor pool;
+    private final boolean owned;
+    private final LongAdder rejected = new LongAdder();
+
+    public AsyncCryptoService(CryptoService service) {
+        this(service, Runtime.getRuntime().availableProcessors(), DEFAULT_QUEUE_CAPACITY, RejectionPolicy.ABORT);
+    }
+
+    public AsyncCryptoService(CryptoService service, int threads, int queueCapacity, RejectionPolicy policy) {
+        this.service = service;
+        this.pool = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), new DaemonThreadFactory(), new Rejection(policy));
+        this.executor = pool;
+        this.owned = true;
+    }
+
+    public AsyncCryptoService(CryptoService service, Executor executor) {
+        this.service = service;
+        this.executor = executor;
+        this.pool = executor instanceof ThreadPoolExecutor ? (ThreadPoolExecutor) executor : null;
+        this.owned = false;
+    }
+
+    public CryptoService getService() {
+        return service;
+    }
+
+    public CompletableFuture<Keys> createKeysAsync(KeyInfo info) {
+        return submit(() -> service.createKeys(info));
+    }
+
+    public CompletableFuture<Pair<Did, Keys>> createMyDidAsync(MyDidInfo info) {
+        return submit(() -> service.createMyDid(info));
+    }
+
+    public CompletableFuture<byte[]> signAsync(byte[] data, Keys keys) {
+        return submit(() -> service.sign(data, keys));
+    }
+
+    public CompletableFuture<byte[]> signAsync(byte[] data, KeyHandle keys) {
+        return submit(() -> service.sign(data, keys));
+    }
+
+    public CompletableFuture<Boolean> verifyAsync(byte[] data, byte[] sign, Keys keys) {
+        return submit(() -> service.verify(data, sign, keys));
+    }
+
+    public CompletableFuture<Boolean> verifyAsync(byte[] data, byte[] sign, KeyHandle keys) {
+        return submit(() -> service.verify(data, sign, keys));
+    }
+
+    public CompletableFuture<BitSet> verifyAllAsync(List<SignedItem> items) {
+        return submit(() -> service.verifyAll(items));
+    }
+
+    public CompletableFuture<CryptoBox> cryptoBoxAsync(byte[] data, Keys sender, Keys receiver) {
+        return submit(() -> service.cryptoBox(data, sender, receiver));
+    }
+
+    public CompletableFuture<CryptoBox> cryptoBoxAsync(byte[] data, KeyHandle sender, KeyHandle receiver) {
+        return submit(() -> service.cryptoBox(data, sender, receiver));
+    }
+
+    public CompletableFuture<byte[]> cryptoBoxOpenAsync(byte[] cipher, byte[] nonce, Keys sender, Keys receiver) {
+        return submit(() -> service.cryptoBoxOpen(cipher, nonce, sender, receiver));
+    }
+
+    public CompletableFuture<byte[]> cryptoBoxOpenAsync(byte[] cipher, byte[] nonce, KeyHandle sender, KeyHandle receiver) {
+        return submit(() -> service.cryptoBoxOpen(cipher, nonce, sender, receiver));
+    }
+
+    public CompletableFuture<byte[]> cryptoBoxSealAsync(Keys keys, byte[] data) {
+        return submit(() -> service.cryptoBoxSeal(keys, data));
+    }
+
+    public CompletableFuture<byte[]> cryptoBoxSealAsync(KeyHandle keys, byte[] data) {
+        return submit(() -> service.cryptoBoxSeal(keys, data));
+    }
+
+    public CompletableFuture<byte[]> cryptoBoxSealOpenAsync(Keys keys, byte[] cipher) {
+        return submit(() -> service.cryptoBoxSealOpen(keys, cipher));
+    }
+
+    public CompletableFuture<byte[]> cryptoBoxSealOpenAsync(KeyHandle keys, byte[] cipher) {
+        return submit(() -> service.cryptoBoxSealOpen(keys, cipher));
+    }
+
+    public CompletableFuture<CryptoDetached> encryptPlaintextAsync(byte[] data, byte[] add, Keys keys) {
+        return submit(() -> service.encryptPlaintext(data, add, keys));
+    }
+
+    public CompletableFuture<CryptoDetached> encryptPlaintextAsync(byte[] data, byte[] add, KeyHandle keys) {
+        return submit(() -> service.encryptPlaintext(data, add, keys));
+    }
+
+    public CompletableFuture<String> decryptPlaintextAsync(CryptoDetached box, byte[] add, Keys keys) {
+        return submit(() -> service.decryptPlaintext(box, add, keys));
+    }
+
+    public CompletableFuture<String> decryptPlaintextAsync(CryptoDetached box, byte[] add, KeyHandle keys) {
+        return submit(() -> service.decryptPlaintext(box, add, keys));
+    }
+
+    /*
+     * Operations waiting in the queue, -1 if the executor is not a ThreadPoolExecutor.
+     */
+    public int getQueueDepth() {
+        return pool == null ? -1 : pool.getQueue().size();
+    }
+
+    /*
+     * Threads running an operation, -1 if the executor is not a ThreadPoolExecutor.
+     */
+    public int getActiveCount() {
+        return pool == null ? -1 : pool.getActiveCount();
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    /*
+     * Stops accepting operations. Queued operations still run, an executor supplied by
+     * the caller is left alone.
+     */
+    @Override
+    public void close() {
+        if(owned){
+            pool.shutdown();
+        }
+    }
+
+    private <T> CompletableFuture<T> submit(Call<T> call) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        try {
+            executor.execute(() -> {
+                try {
+                    future.complete(call.call());
+                } catch(Throwable e){
+                    future.completeExceptionally(e);
+                }
+            });
+        } catch(RejectedExecutionException e){
+            // counted by the handler of an owned pool
+            if(!owned){
+                rejected.increment();
+            }
+            LOG.debug("Crypto operation rejected: {}", e.getMessage());
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    @FunctionalInterface
+    private interface Call<T> {
+        T call() throws Exception;
+    }
+
+    private class Rejection implements RejectedExecutionHandler {
+
+        private final RejectionPolicy policy;
+
+        Rejection(RejectionPolicy policy) {
+            this.policy = policy;
+        }
+
+        @Override
+        public void rejectedExecution(Runnable task, ThreadPoolExecutor executor) {
+            rejected.increment();
+            if(executor.isShutdown()){
+                throw new RejectedExecutionException("Crypto service is closed");
+            }
+            if(policy == RejectionPolicy.CALLER_RUNS){
+                task.run();
+                return;
+            }
+            throw new RejectedExecutionException(String.format("Crypto queue full: %d operations waiting", executor.getQueue().size()));
+        }
+    }
+
+    private static class DaemonThreadFactory implements ThreadFactory {
+
+        private static final AtomicInteger POOL = new AtomicInteger();
+
+        private final AtomicInteger count = new AtomicInteger();
+        private final int pool = POOL.incrementAndGet();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, String.format("jssi-crypto-%d-%d", pool, count.incrementAndGet()));
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,339 @@
+/*
+ *
+ *  The MIT License
+ *
+ *  Copyright 2019 ITON Solutions.
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+
+package org.iton.jssi.crypto;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * CBOR encoding of the crypto containers with raw byte strings, written and read with the
+ * Jackson streaming API: no Base64, no reflection and no intermediate tree. Every container
+ * is a CBOR map keyed by the field names of its class; null fields are left out and unknown
+ * fields are skipped. The generator and parser variants write or read one value, so several
+ * values can share a stream (a CBOR sequence).
+ *
+ * @author ITON Solutions
+ */
+public final class CborCodec {
+
+    public static final CBORFactory FACTORY = new CBORFactory();
+
+    static {
+        FACTORY.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        FACTORY.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+    }
+
+    private CborCodec() {
+    }
+
+    public static void write(JsonGenerator generator, CryptoBox box) throws IOException {
+        generator.writeStartObject();
+        writeBinary(generator, "cipher", box.cipher);
+        writeBinary(generator, "nonce", box.nonce);
+        generator.writeEndObject();
+    }
+
+    public static void write(JsonGenerator generator, ComboBoxBinary box) throws IOException {
+        generator.writeStartObject();
+        writeBinary(generator, "cipher", box.cipher);
+        writeString(generator, "sender", box.sender);
+        writeBinary(generator, "nonce", box.nonce);
+        generator.writeEndObject();
+    }
+
+    public static void write(JsonGenerator generator, CryptoDetachedBinary box) throws IOException {
+        generator.writeStartObject();
+        writeBinary(generator, "cipher", box.cipher);
+        writeBinary(generator, "nonce", box.nonce);
+        writeBinary(generator, "tag", box.tag);
+        generator.writeEndObject();
+    }
+
+    public static void write(JsonGenerator generator, Envelope envelope) throws IOException {
+        generator.writeStartObject();
+        writeString(generator, "alg", envelope.alg);
+        writeBinary(generator, "cipher", envelope.cipher);
+        writeBinary(generator, "nonce", envelope.nonce);
+        writeBinary(generator, "tag", envelope.tag);
+        if(envelope.recipients != null){
+            generator.writeFieldName("recipients");
+            generator.writeStartObject();
+            for(Map.Entry<String, Envelope.Recipient> entry : envelope.recipients.entrySet()){
+                Envelope.Recipient recipient = entry.getValue();
+                generator.writeFieldName(entry.getKey());
+                generator.writeStartObject();
+                writeBinary(generator, "key", recipient.key);
+                writeBinary(generator, "nonce", recipient.nonce);
+                writeBinary(generator, "sender", recipient.sender);
+                generator.writeEndObject();
+            }
+            generator.writeEndObject();
+        }
+        generator.writeEndObject();
+    }
+
+    public static CryptoBox readCryptoBox(JsonParser parser) throws IOException {
+        CryptoBox box = new CryptoBox(null, null);
+        startObject(parser);
+        while(parser.nextToken() == JsonToken.FIELD_NAME){
+            String name = parser.getCurrentName();
+            parser.nextToken();
+            switch(name){
+                case "cipher":
+                    box.cipher = readBinary(parser);
+                    break;
+                case "nonce":
+                    box.nonce = readBinary(parser);
+                    break;
+                default:
+                    parser.skipChildren();
+            }
+        }
+        return box;
+    }
+
+    public static ComboBoxBinary readComboBox(JsonParser parser) throws IOException {
+        ComboBoxBinary box = new ComboBoxBinary(null, null, null);
+        startObject(parser);
+        while(parser.nextToken() == JsonToken.FIELD_NAME){
+            String name = parser.getCurrentName();
+            parser.nextToken();
+            switch(name){
+                case "cipher":
+                    box.cipher = readBinary(parser);
+                    break;
+                case "sender":
+                    box.sender = readString(parser);
+                    break;
+                case "nonce":
+                    box.nonce = readBinary(parser);
+                    break;
+                default:
+                    parser.skipChildren();
+            }
+        }
+        return box;
+    }
+
+    public static CryptoDetachedBinary readCryptoDetached(JsonParser parser) throws IOException {
+        CryptoDetachedBinary box = new CryptoDetachedBinary(null, null, null);
+        startObject(parser);
+        while(parser.nextToken() == JsonToken.FIELD_NAME){
+            String name = parser.getCurrentName();
+            parser.nextToken();
+            switch(name){
+                case "cipher":
+                    box.cipher = readBinary(parser);
+                    break;
+                case "nonce":
+                    box.nonce = readBinary(parser);
+                    break;
+                case "tag":
+                    box.tag = readBinary(parser);
+                    break;
+                default:
+                    parser.skipChildren();
+            }
+        }
+        return box;
+    }
+
+    public static Envelope readEnvelope(JsonParser parser) throws IOException {
+        Envelope envelope = new Envelope(null, null, null, null, null);
+        startObject(parser);
+        while(parser.nextToken() == JsonToken.FIELD_NAME){
+            String name = parser.getCurrentName();
+            parser.nextToken();
+            switch(name){
+                case "alg":
+                    envelope.alg = readString(parser);
+                    break;
+                case "cipher":
+                    envelope.cipher = readBinary(parser);
+                    break;
+                case "nonce":
+                    envelope.nonce = readBinary(parser);
+                    break;
+                case "tag":
+                    envelope.tag = readBinary(parser);
+                    break;
+                case "recipients":
+                    envelope.recipients = readRecipients(parser);
+                    break;
+                default:
+                    parser.skipChildren();
+            }
+        }
+        return envelope;
+    }
+
+    public static byte[] encode(CryptoBox box) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(box.cipher.length + 64);
+        write(out, box);
+        return out.toByteArray();
+    }
+
+    public static byte[] encode(ComboBoxBinary box) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(box.cipher.length + 128);
+        write(out, box);
+        return out.toByteArray();
+    }
+
+    public static byte[] encode(CryptoDetachedBinary box) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(box.cipher.length + 64);
+        write(out, box);
+        return out.toByteArray();
+    }
+
+    public static byte[] encode(Envelope envelope) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(envelope.cipher.length + 256);
+        write(out, envelope);
+        return out.toByteArray();
+    }
+
+    public static void write(OutputStream out, CryptoBox box) throws IOException {
+        try (JsonGenerator generator = FACTORY.createGenerator(out)) {
+            write(generator, box);
+        }
+    }
+
+    public static void write(OutputStream out, ComboBoxBinary box) throws IOException {
+        try (JsonGenerator generator = FACTORY.createGenerator(out)) {
+            write(generator, box);
+        }
+    }
+
+    public static void write(OutputStream out, CryptoDetachedBinary box) throws IOException {
+        try (JsonGenerator generator = FACTORY.createGenerator(out)) {
+            write(generator, box);
+        }
+    }
+
+    public static void write(OutputStream out, Envelope envelope) throws IOException {
+        try (JsonGenerator generator = FACTORY.createGenerator(out)) {
+            write(generator, envelope);
+        }
+    }
+
+    /*
+     * The stream variants of the readers may buffer past the value, they are meant for
+     * streams holding a single value.
+     */
+    public static CryptoBox readCryptoBox(InputStream in) throws IOException {
+        try (JsonParser parser = FACTORY.createParser(in)) {
+            return readCryptoBox(parser);
+        }
+    }
+
+    public static ComboBoxBinary readComboBox(InputStream in) throws IOException {
+        try (JsonParser parser = FACTORY.createParser(in)) {
+            return readComboBox(parser);
+        }
+    }
+
+    public static CryptoDetachedBinary readCryptoDetached(InputStream in) throws IOException {
+        try (JsonParser parser = FACTORY.createParser(in)) {
+            return readCryptoDetached(parser);
+        }
+    }
+
+    public static Envelope readEnvelope(InputStream in) throws IOException {
+        try (JsonParser parser = FACTORY.createParser(in)) {
+            return readEnvelope(parser);
+        }
+    }
+
+    private static Map<String, Envelope.Recipient> readRecipients(JsonParser parser) throws IOException {
+        if(parser.currentToken() != JsonToken.START_OBJECT){
+            throw new JsonParseException(parser, "Expected recipients map");
+        }
+        Map<String, Envelope.Recipient> recipients = new HashMap<>();
+        while(parser.nextToken() == JsonToken.FIELD_NAME){
+            String verkey = parser.getCurrentName();
+            parser.nextToken();
+            if(parser.currentToken() != JsonToken.START_OBJECT){
+                throw new JsonParseException(parser, "Expected recipient map");
+            }
+            Envelope.Recipient recipient = new Envelope.Recipient(null, null, null);
+            while(parser.nextToken() == JsonToken.FIELD_NAME){
+                String name = parser.getCurrentName();
+                parser.nextToken();
+                switch(name){
+                    case "key":
+                        recipient.key = readBinary(parser);
+                        break;
+                    case "nonce":
+                        recipient.nonce = readBinary(parser);
+                        break;
+                    case "sender":
+                        recipient.sender = readBinary(parser);
+                        break;
+                    default:
+                        parser.skipChildren();
+                }
+            }
+            recipients.put(verkey, recipient);
+        }
+        return recipients;
+    }
+
+    private static void startObject(JsonParser parser) throws IOException {
+        JsonToken token = parser.currentToken() == JsonToken.START_OBJECT ? JsonToken.START_OBJECT : parser.nextToken();
+        if(token != JsonToken.START_OBJECT){
+            throw new JsonParseException(parser, String.format("Expected start of map, found %s", token));
+        }
+    }
+
+    private static void writeBinary(JsonGenerator generator, String name, byte[] value) throws IOException {
+        if(value != null){
+            generator.writeFieldName(name);
+            generator.writeBinary(value);
+        }
+    }
+
+    private static void writeString(JsonGenerator generator, String name, String value) throws IOException {
+        if(value != null){
+            generator.writeStringField(name, value);
+        }
+    }
+
+    private static byte[] readBinary(JsonParser parser) throws IOException {
+        return parser.currentToken() == JsonToken.VALUE_NULL ? null : parser.getBinaryValue();
+    }
+
+    private static String readString(JsonParser parser) throws IOException {
+        return parser.currentToken() == JsonToken.VALUE_NULL ? null : parser.getValueAsString();
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ *
+ *  The MIT License
+ *
+ *  Copyright 2019 ITON Solutions.
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+
+package org.iton.jssi.crypto;
+
+import java.util.Base64;
+
+/**
+ * {@link ComboBox} with raw cipher and nonce bytes, for binary transports such as CBOR.
+ *
+ * @author ITON Solutions
+ */
+public class ComboBoxBinary {
+    public byte[] cipher;
+    public String sender;
+    public byte[] nonce;
+    
+    public ComboBoxBinary(byte[] cipher, String sender, byte[] nonce){
+        this.cipher = cipher;
+        this.sender = sender;
+        this.nonce = nonce;
+    }
+    
+    public static ComboBoxBinary from(ComboBox box){
+        return new ComboBoxBinary(
+                Base64.getDecoder().decode(box.cipher),
+                box.sender,
+                Base64.getDecoder().decode(box.nonce));
+    }
+    
+    public ComboBox toComboBox(){
+        return new ComboBox(
+                Base64.getEncoder().encodeToString(cipher),
+                sender,
+                Base64.getEncoder().encodeToString(nonce));
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ *
+ *  The MIT License
+ *
+ *  Copyright 2019 ITON Solutions.
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+
+package org.iton.jssi.crypto;
+
+import java.util.Base64;
+
+/**
+ * {@link CryptoDetached} with raw cipher, nonce and tag bytes, for binary transports such
+ * as CBOR.
+ *
+ * @author ITON Solutions
+ */
+public class CryptoDetachedBinary {
+    public byte[] nonce;
+    public byte[] cipher;
+    public byte[] tag;
+    
+    public CryptoDetachedBinary(byte[] cipher, byte[] nonce, byte[] tag){
+        this.cipher = cipher;
+        this.nonce = nonce;
+        this.tag = tag;
+    }
+    
+    public static CryptoDetachedBinary from(CryptoDetached box){
+        return new CryptoDetachedBinary(
+                Base64.getDecoder().decode(box.cipher),
+                Base64.getDecoder().decode(box.nonce),
+                Base64.getDecoder().decode(box.tag));
+    }
+    
+    public CryptoDetached toCryptoDetached(){
+        return new CryptoDetached(
+                Base64.getEncoder().encodeToString(cipher),
+                Base64.getEncoder().encodeToString(nonce),
+                Base64.getEncoder().encodeToString(tag));
+    }
+}
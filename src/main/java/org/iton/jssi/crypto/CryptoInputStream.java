@@ -0,0 +1,212 @@
+/*
+ *
+ *  The MIT License
+ *
+ *  Copyright 2019 ITON Solutions.
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+
+package org.iton.jssi.crypto;
+
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import org.libsodium.api.Crypto_aead_chacha20poly1305_ietf;
+import static org.libsodium.jni.SodiumConstants.CRYPTO_AEAD_CHACHA20POLY1305_IETF_NONCEBYTES;
+import org.libsodium.jni.SodiumException;
+
+import static org.iton.jssi.crypto.CryptoOutputStream.CHUNK_HEADER_BYTES;
+import static org.iton.jssi.crypto.CryptoOutputStream.COUNTER_OFFSET;
+import static org.iton.jssi.crypto.CryptoOutputStream.HEADER_BYTES;
+import static org.iton.jssi.crypto.CryptoOutputStream.MAX_CHUNKS;
+import static org.iton.jssi.crypto.CryptoOutputStream.SALT_BYTES;
+import static org.iton.jssi.crypto.CryptoOutputStream.TAG_BYTES;
+import static org.iton.jssi.crypto.CryptoOutputStream.VERSION;
+
+/**
+ * Decrypts a stream written by {@link CryptoOutputStream} one chunk at a time. Every chunk
+ * is authenticated before any of its data is returned; a tampered, reordered or truncated
+ * stream fails with an {@link IOException}. The stream ends after the final chunk, any data
+ * following it in the underlying stream is left unread.
+ *
+ * @author ITON Solutions
+ */
+public class CryptoInputStream extends FilterInputStream {
+
+    // upper bound of the chunk size accepted from a stream header
+    public static final int MAX_CHUNK_SIZE = 0x1000000;
+
+    private final byte[] key;
+    // key of the stream, derived from key and the salt of the header
+    private byte[] streamKey;
+    private final byte[] nonce = new byte[CRYPTO_AEAD_CHACHA20POLY1305_IETF_NONCEBYTES];
+    private final byte[] add = new byte[HEADER_BYTES + CHUNK_HEADER_BYTES];
+    private final byte[] tag = new byte[TAG_BYTES];
+    private byte[] cipher;
+    private byte[] data = new byte[0];
+    private int position;
+    private int chunkSize;
+    private long counter;
+    private boolean last;
+
+    public CryptoInputStream(InputStream in, byte[] key){
+        super(in);
+        this.key = key;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if(!fill()){
+            return -1;
+        }
+        return data[position++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) throws IOException {
+        if((offset | length | (offset + length) | (bytes.length - (offset + length))) < 0){
+            throw new IndexOutOfBoundsException();
+        }
+        if(length == 0){
+            return 0;
+        }
+        if(!fill()){
+            return -1;
+        }
+        int n = Math.min(length, data.length - position);
+        System.arraycopy(data, position, bytes, offset, n);
+        position += n;
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = 0;
+        while(skipped < n && fill()){
+            int step = (int) Math.min(n - skipped, data.length - position);
+            position += step;
+            skipped += step;
+        }
+        return skipped;
+    }
+
+    @Override
+    public int available() {
+        return data.length - position;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public synchronized void mark(int limit) {
+    }
+
+    @Override
+    public synchronized void reset() throws IOException {
+        throw new IOException("Mark not supported");
+    }
+
+    @Override
+    public void close() throws IOException {
+        Arrays.fill(data, (byte) 0);
+        if(streamKey != null){
+            Arrays.fill(streamKey, (byte) 0);
+        }
+        super.close();
+    }
+
+    /*
+     * Makes sure there is unread plaintext, decrypting the next chunk if needed.
+     * Returns false at the end of the stream.
+     */
+    private boolean fill() throws IOException {
+        while(position == data.length){
+            if(last){
+                return false;
+            }
+            if(cipher == null){
+                readHeader();
+            }
+            readChunk();
+        }
+        return true;
+    }
+
+    private void readHeader() throws IOException {
+        readFully(add, 0, HEADER_BYTES);
+        if(add[0] != VERSION){
+            throw new IOException(String.format("Unsupported crypto stream version %d", add[0]));
+        }
+        chunkSize = CryptoOutputStream.readInt(add, 1);
+        if(chunkSize <= 0 || chunkSize > MAX_CHUNK_SIZE){
+            throw new IOException(String.format("Invalid crypto stream chunk size %d", chunkSize));
+        }
+        streamKey = CryptoOutputStream.deriveKey(key, Arrays.copyOfRange(add, 5, 5 + SALT_BYTES));
+        cipher = new byte[0];
+    }
+
+    private void readChunk() throws IOException {
+        if(counter > MAX_CHUNKS){
+            throw new IOException("Too many chunks in crypto stream");
+        }
+
+        readFully(add, HEADER_BYTES, CHUNK_HEADER_BYTES);
+        byte flag = add[HEADER_BYTES];
+        int length = CryptoOutputStream.readInt(add, HEADER_BYTES + 1);
+        if((flag != 0 && flag != 1) || length < 0 || length > chunkSize){
+            throw new IOException("Invalid crypto stream chunk header");
+        }
+
+        if(cipher.length != length){
+            cipher = new byte[length];
+        }
+        readFully(cipher, 0, length);
+        readFully(tag, 0, TAG_BYTES);
+
+        CryptoOutputStream.writeInt(nonce, COUNTER_OFFSET, (int) counter);
+        nonce[COUNTER_OFFSET + 4] = flag;
+
+        Arrays.fill(data, (byte) 0);
+        try {
+            data = Crypto_aead_chacha20poly1305_ietf.decrypt_detached(cipher, tag, add, nonce, streamKey);
+        } catch(SodiumException e){
+            throw new IOException("Crypto stream chunk authentication failed", e);
+        }
+        position = 0;
+        last = flag == 1;
+        counter++;
+    }
+
+    private void readFully(byte[] bytes, int offset, int length) throws IOException {
+        while(length > 0){
+            int n = in.read(bytes, offset, length);
+            if(n < 0){
+                throw new EOFException("Truncated crypto stream");
+            }
+            offset += n;
+            length -= n;
+        }
+    }
+}
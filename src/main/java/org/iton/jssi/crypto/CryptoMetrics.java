@@ -0,0 +1,67 @@
+/*
+ *
+ *  The MIT License
+ *
+ *  Copyright 2019 ITON Solutions.
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+
+package org.iton.jssi.crypto;
+
+/**
+ * Listener notified by {@link CryptoService} after every operation. Implementations are
+ * called on the thread running the operation and must be thread safe and cheap; see
+ * {@link InMemoryCryptoMetrics} for a ready made one.
+ *
+ * @author ITON Solutions
+ */
+public interface CryptoMetrics {
+    
+    public static enum Operation {
+        CREATE_KEYS,
+        CREATE_MY_DID,
+        CREATE_THEIR_DID,
+        SIGN,
+        VERIFY,
+        VERIFY_ALL,
+        CRYPTO_BOX,
+        CRYPTO_BOX_OPEN,
+        CRYPTO_BOX_SEAL,
+        CRYPTO_BOX_SEAL_ALL,
+        CRYPTO_BOX_SEAL_OPEN,
+        ENCRYPT_PLAINTEXT,
+        DECRYPT_PLAINTEXT,
+        PACK,
+        UNPACK
+    }
+    
+    // default listener, records nothing
+    public static final CryptoMetrics NONE = (operation, size, nanos, success) -> {};
+    
+    /**
+     * Records one operation.
+     *
+     * @param operation the operation
+     * @param size the payload size in bytes (the number of items for VERIFY_ALL, 0 for key creation)
+     * @param nanos the time taken in nanoseconds
+     * @param success false if the operation threw an exception or returned no result
+     */
+    public void record(Operation operation, int size, long nanos, boolean success);
+}
@@ -0,0 +1,234 @@
+/*
+ *
+ *  The MIT License
+ *
+ *  Copyright 2019 ITON Solutions.
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+
+package org.iton.jssi.crypto;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+import java.util.Map;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import org.iton.jssi.crypto.util.RandomPool;
+import org.libsodium.api.Crypto_aead_chacha20poly1305_ietf;
+import static org.libsodium.jni.SodiumConstants.CRYPTO_AEAD_CHACHA20POLY1305_IETF_NONCEBYTES;
+import org.libsodium.jni.SodiumException;
+
+/**
+ * Encrypts a stream of any length with ChaCha20-Poly1305 (IETF) using constant memory.
+ * The plaintext is cut into chunks of at most {@code chunkSize} bytes, each one encrypted
+ * and authenticated on its own. Every stream is encrypted with a key of its own, derived
+ * with HKDF-SHA256 from the given key and a random salt carried in the header, so streams
+ * never share a key and their nonces need not be random. The nonce of a chunk is the chunk
+ * counter followed by a final-chunk marker, so chunks cannot be reordered, dropped or
+ * appended and a truncated stream is detected by {@link CryptoInputStream}.
+ * <pre>
+ * header: version (1) | chunk size (4) | salt (32)
+ * chunk:  final flag (1) | length (4) | cipher (length) | tag (16)
+ * </pre>
+ * The stream header and the chunk header are the additional data of every chunk.
+ * Closing the stream writes the final chunk, without it the stream cannot be decrypted.
+ *
+ * @author ITON Solutions
+ */
+public class CryptoOutputStream extends FilterOutputStream {
+    
+    public static final int DEFAULT_CHUNK_SIZE = 0x10000;
+    
+    static final byte VERSION = 2;
+    static final int SALT_BYTES = 32;
+    static final int HEADER_BYTES = 1 + 4 + SALT_BYTES;
+    // the nonce is zero up to the chunk counter
+    static final int COUNTER_OFFSET = 7;
+    static final int KEY_BYTES = 32;
+    static final int CHUNK_HEADER_BYTES = 1 + 4;
+    static final int TAG_BYTES = 16;
+    static final long MAX_CHUNKS = 0xFFFFFFFFL;
+    
+    private final byte[] key;
+    private final byte[] buffer;
+    private final byte[] nonce = new byte[CRYPTO_AEAD_CHACHA20POLY1305_IETF_NONCEBYTES];
+    private final byte[] add = new byte[HEADER_BYTES + CHUNK_HEADER_BYTES];
+    private int count;
+    private long counter;
+    private boolean closed;
+    
+    public CryptoOutputStream(OutputStream out, byte[] key) throws IOException {
+        this(out, key, DEFAULT_CHUNK_SIZE);
+    }
+    
+    public CryptoOutputStream(OutputStream out, byte[] key, int chunkSize) throws IOException {
+        super(out);
+        
+        if(chunkSize <= 0){
+            throw new IllegalArgumentException(String.format("Invalid chunk size %d", chunkSize));
+        }
+        
+        this.buffer = new byte[chunkSize];
+        
+        add[0] = VERSION;
+        writeInt(add, 1, chunkSize);
+        byte[] salt = new byte[SALT_BYTES];
+        try {
+            RandomPool.nextBytes(salt);
+        } catch(SodiumException e){
+            throw new IOException(e);
+        }
+        System.arraycopy(salt, 0, add, 5, SALT_BYTES);
+        this.key = deriveKey(key, salt);
+        out.write(add, 0, HEADER_BYTES);
+    }
+    
+    @Override
+    public void write(int b) throws IOException {
+        ensureOpen();
+        if(count == buffer.length){
+            writeChunk(false);
+        }
+        buffer[count++] = (byte) b;
+    }
+    
+    @Override
+    public void write(byte[] data, int offset, int length) throws IOException {
+        ensureOpen();
+        if((offset | length | (offset + length) | (data.length - (offset + length))) < 0){
+            throw new IndexOutOfBoundsException();
+        }
+        
+        while(length > 0){
+            // a full buffer is only written once more data arrives, the last chunk is written on close
+            if(count == buffer.length){
+                writeChunk(false);
+            }
+            int n = Math.min(length, buffer.length - count);
+            System.arraycopy(data, offset, buffer, count, n);
+            count += n;
+            offset += n;
+            length -= n;
+        }
+    }
+    
+    /*
+     * Writes the buffered data as a chunk of its own, so everything written so far
+     * can be decrypted by the reader, and flushes the underlying stream.
+     */
+    @Override
+    public void flush() throws IOException {
+        ensureOpen();
+        if(count > 0){
+            writeChunk(false);
+        }
+        out.flush();
+    }
+    
+    @Override
+    public void close() throws IOException {
+        if(closed){
+            return;
+        }
+        closed = true;
+        try {
+            writeChunk(true);
+            out.flush();
+        } finally {
+            Arrays.fill(buffer, (byte) 0);
+            Arrays.fill(key, (byte) 0);
+            out.close();
+        }
+    }
+    
+    private void writeChunk(boolean last) throws IOException {
+        if(counter > MAX_CHUNKS){
+            throw new IOException("Too many chunks in crypto stream");
+        }
+        
+        writeInt(nonce, COUNTER_OFFSET, (int) counter);
+        nonce[COUNTER_OFFSET + 4] = (byte) (last ? 1 : 0);
+        add[HEADER_BYTES] = (byte) (last ? 1 : 0);
+        writeInt(add, HEADER_BYTES + 1, count);
+        
+        byte[] data = count == buffer.length ? buffer : Arrays.copyOf(buffer, count);
+        try {
+            Map<String, byte[]> result = Crypto_aead_chacha20poly1305_ietf.encrypt_detached(data, add, nonce, key);
+            out.write(add, HEADER_BYTES, CHUNK_HEADER_BYTES);
+            out.write(result.get("cipher"));
+            out.write(result.get("tag"));
+        } catch(SodiumException e){
+            throw new IOException(e);
+        } finally {
+            if(data != buffer){
+                Arrays.fill(data, (byte) 0);
+            }
+        }
+        counter++;
+        count = 0;
+    }
+    
+    private void ensureOpen() throws IOException {
+        if(closed){
+            throw new IOException("Crypto stream closed");
+        }
+    }
+    
+    /*
+     * HKDF-SHA256 (RFC 5869) of the stream key from the given key and the salt of the
+     * stream header.
+     */
+    static byte[] deriveKey(byte[] key, byte[] salt) throws IOException {
+        byte[] prk = null;
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(salt, "HmacSHA256"));
+            prk = mac.doFinal(key);
+            mac.init(new SecretKeySpec(prk, "HmacSHA256"));
+            mac.update("jssi crypto stream".getBytes(StandardCharsets.US_ASCII));
+            mac.update((byte) 1);
+            return Arrays.copyOf(mac.doFinal(), KEY_BYTES);
+        } catch(GeneralSecurityException e){
+            throw new IOException("Cannot derive crypto stream key", e);
+        } finally {
+            if(prk != null){
+                Arrays.fill(prk, (byte) 0);
+            }
+        }
+    }
+    
+    static void writeInt(byte[] bytes, int offset, int value){
+        bytes[offset] = (byte) (value >>> 24);
+        bytes[offset + 1] = (byte) (value >>> 16);
+        bytes[offset + 2] = (byte) (value >>> 8);
+        bytes[offset + 3] = (byte) value;
+    }
+    
+    static int readInt(byte[] bytes, int offset){
+        return ((bytes[offset] & 0xFF) << 24)
+                | ((bytes[offset + 1] & 0xFF) << 16)
+                | ((bytes[offset + 2] & 0xFF) << 8)
+                | (bytes[offset + 3] & 0xFF);
+    }
+}
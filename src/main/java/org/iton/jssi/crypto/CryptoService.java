@@ -25,23 +25,45 @@
 
 package org.iton.jssi.crypto;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Base64;
+import java.util.BitSet;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.IntStream;
 import org.bitcoinj.core.AddressFormatException;
-import org.bitcoinj.core.Base58;
+import org.iton.jssi.crypto.util.Base58;
+import org.iton.jssi.crypto.CryptoMetrics.Operation;
 import org.iton.jssi.crypto.algorithm.CryptoFactory;
 import org.iton.jssi.crypto.algorithm.ICrypto;
 import org.iton.jssi.crypto.algorithm.ICrypto.CryptoType;
+import org.iton.jssi.crypto.util.BoundedCache;
+import org.iton.jssi.crypto.util.RandomPool;
 import org.iton.jssi.crypto.util.Utils;
+import org.iton.jssi.crypto.util.Validator;
 import org.iton.jssi.did.Did;
 import org.iton.jssi.did.MyDidInfo;
 import org.iton.jssi.did.TheirDid;
 import org.iton.jssi.did.TheirDidInfo;
 import org.iton.jssi.util.Pair;
 import org.libsodium.api.Crypto_aead_chacha20poly1305_ietf;
-import org.libsodium.api.Crypto_randombytes;
+
 import org.libsodium.jni.SodiumConstants;
 import static org.libsodium.jni.SodiumConstants.CRYPTO_AEAD_CHACHA20POLY1305_IETF_NONCEBYTES;
+import static org.libsodium.jni.SodiumConstants.CRYPTO_BOX_CURVE25519XCHACHA20POLY1305_NONCEBYTES;
 import org.libsodium.jni.SodiumException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -53,61 +75,201 @@ import org.slf4j.LoggerFactory;
 public class CryptoService {
     
     private static final Logger LOG = LoggerFactory.getLogger(CryptoService.class);
+    // below this number of recipients cryptoBoxSealAll runs on the calling thread
+    private static final int SEAL_PARALLEL_THRESHOLD = 4;
+    // ChaCha20-Poly1305 key of an envelope
+    private static final int CONTENT_KEY_BYTES = 32;
+    
+    private BoundedCache<String, byte[]> keyCache;
+    private CryptoMetrics metrics = CryptoMetrics.NONE;
+    private NonceSequencer nonceSequencer;
+    private Validator validator = Validator.getDefault();
+    
+    public BoundedCache<String, byte[]> getKeyCache(){
+        return keyCache;
+    }
+    
+    /*
+     * Enables caching of Base58 decoded verkeys and signkeys, so repeated operations
+     * with the same keys skip the decoding. The cache holds decoded signkeys in heap
+     * memory, the cached arrays are shared and never handed out of this service.
+     * Pass null to disable caching (the default).
+     */
+    public void setKeyCache(BoundedCache<String, byte[]> keyCache){
+        this.keyCache = keyCache;
+    }
+    
+    public CryptoMetrics getMetrics(){
+        return metrics;
+    }
+    
+    /*
+     * Sets the listener recording count, payload size, latency and outcome of every
+     * operation, e.g. an InMemoryCryptoMetrics. Pass null to restore the default,
+     * which records nothing.
+     */
+    public void setMetrics(CryptoMetrics metrics){
+        this.metrics = metrics == null ? CryptoMetrics.NONE : metrics;
+    }
+    
+    public NonceSequencer getNonceSequencer(){
+        return nonceSequencer;
+    }
+    
+    /*
+     * Sets the source of the nonces of cryptoBox, which then come from a per-key counter
+     * instead of the random number generator. Pass null to restore the default, random
+     * nonces. The 12 byte nonces of encryptPlaintext are always random.
+     */
+    public void setNonceSequencer(NonceSequencer nonceSequencer){
+        this.nonceSequencer = nonceSequencer;
+    }
+    
+    public Validator getValidator(){
+        return validator;
+    }
+    
+    /*
+     * Sets the validator of validateDid and validateKey, which remembers the values found
+     * valid. Pass null to restore the shared default validator.
+     */
+    public void setValidator(Validator validator){
+        this.validator = validator == null ? Validator.getDefault() : validator;
+    }
     
     public Keys createKeys(KeyInfo info) throws SodiumException{
-        LOG.debug(String.format("Create key: %s", info == null ? "no info" : info));
+        LOG.debug("Create key: {}", info == null ? "no info" : info);
         
-        ICrypto crypto;
-        Keys keys;
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            ICrypto crypto;
+            Keys keys;
         
-        if(info == null){
-            crypto = CryptoFactory.getCrypto();
-            keys = crypto.createKeys(null);
-        } else {
-            crypto = CryptoFactory.getCrypto(info.cryptoType);
-            byte[] seed = convertSeed(info.seed);
-            keys = crypto.createKeys(seed);
+            if(info == null){
+                crypto = CryptoFactory.getCrypto();
+                keys = crypto.createKeys(null);
+            } else {
+                crypto = CryptoFactory.getCrypto(info.cryptoType);
+                byte[] seed = convertSeed(info.seed);
+                keys = crypto.createKeys(seed);
+            }
+            keys.verkey = String.format("%s:%s", keys.verkey, crypto.getType().getName());
+            success = true;
+            return keys;
+        } finally {
+            metrics.record(Operation.CREATE_KEYS, 0, System.nanoTime() - start, success);
         }
-        keys.verkey = String.format("%s:%s", keys.verkey, crypto.getType().getName());
-        return keys;
     }
 
+    public KeyHandle createKeyHandle(KeyInfo info) throws SodiumException, CryptoException{
+        LOG.debug("Create key handle: {}", info);
+        
+        long start = System.nanoTime();
+        boolean success = false;
+        byte[] seed = null;
+        try {
+            if(CryptoType.toType(info.cryptoType) == null){
+                throw new CryptoException(String.format("Trying to use key with unknown crypto: %s", info.cryptoType));
+            }
+            
+            // the raw keypair goes into the handle without a Base58 round trip
+            ICrypto crypto = CryptoFactory.getCrypto(info.cryptoType);
+            seed = convertSeed(info.seed);
+            Map<String, byte[]> pair = crypto.createKeyPair(seed);
+            KeyHandle handle = new KeyHandle(pair.get("pk"), pair.get("sk"), crypto);
+            success = true;
+            return handle;
+        } finally {
+            if(seed != null){
+                Arrays.fill(seed, (byte) 0);
+            }
+            metrics.record(Operation.CREATE_KEYS, 0, System.nanoTime() - start, success);
+        }
+    }
+    
+    /*
+     * Parses the verkey, resolves its crypto and decodes both keys once. The signkey
+     * may be null for keys of other parties, such a handle can only be used where no
+     * secret key is needed.
+     */
+    public KeyHandle createKeyHandle(Keys keys) throws CryptoException, AddressFormatException{
+        LOG.debug("Create key handle: {}", keys.verkey);
+        
+        String verkey;
+        String type;
+        
+        if(keys.verkey.contains(":")){
+            String[] splits = keys.verkey.split(":");
+            verkey = splits[0];
+            type = splits[1];
+        } else {
+            verkey = keys.verkey;
+            type = CryptoType.DEFAULT_CRYPTO_TYPE.getName();
+        }
+        
+        if(CryptoType.toType(type) == null){
+            throw new CryptoException(String.format("Trying to use key with unknown crypto: %s", type));
+        }
+        
+        ICrypto crypto = CryptoFactory.getCrypto(type);
+        byte[] pk = decode(verkey);
+        byte[] sk = keys.signkey == null ? null : decode(keys.signkey);
+        return new KeyHandle(pk, sk, crypto);
+    }
+    
     public Pair<Did, Keys> createMyDid(MyDidInfo info) throws SodiumException{
-        LOG.debug(String.format("Create my did %s", info));
+        LOG.debug("Create my did {}", info);
 
-        ICrypto crypto = CryptoFactory.getCrypto(info.cryptoType);
-        byte[] seed = convertSeed(info.seed);
-        Keys keys = crypto.createKeys(seed);
-        String did = null;
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            ICrypto crypto = CryptoFactory.getCrypto(info.cryptoType);
+            byte[] seed = convertSeed(info.seed);
+            Map<String, byte[]> pair = crypto.createKeyPair(seed);
+            byte[] pk = pair.get("pk");
+            byte[] sk = pair.get("sk");
+            Keys keys = new Keys(Base58.encode(pk), Base58.encode(sk));
+            Arrays.fill(sk, (byte) 0);
+            String did = null;
 
-        if(info.did != null){
-            did = validateDid(info.did) ? info.did : did;
-        } else if(info.cid){
-            did = keys.verkey;
-        } else {
-            byte[] abridged = new byte[0x10];
-            byte[] bytes = Base58.decode(keys.verkey);
-            System.arraycopy(bytes, 0, abridged, 0, abridged.length);
-            did = Base58.encode(abridged);
-        }
+            if(info.did != null){
+                did = validateDid(info.did) ? info.did : did;
+            } else if(info.cid){
+                did = keys.verkey;
+            } else {
+                // the abbreviated DID is the first 16 bytes of the verkey
+                did = Base58.encode(pk, 0, 0x10);
+            }
 
-        if(!info.cryptoType.equals(CryptoType.DEFAULT_CRYPTO_TYPE)) {
-            keys.verkey = String.format("%s:%s", keys.verkey, crypto.getType().getName());
+            if(!info.cryptoType.equals(CryptoType.DEFAULT_CRYPTO_TYPE)) {
+                keys.verkey = String.format("%s:%s", keys.verkey, crypto.getType().getName());
+            }
+            success = true;
+            return Pair.create(new Did(did, keys.verkey), keys);
+        } finally {
+            metrics.record(Operation.CREATE_MY_DID, 0, System.nanoTime() - start, success);
         }
-        return Pair.create(new Did(did, keys.verkey), keys);
     }
     
     public TheirDid createTheirDid(TheirDidInfo info) throws CryptoException{
-        LOG.debug(String.format("Create their did %s", info));
+        LOG.debug("Create their did {}", info);
         
-        String verkey = Utils.buildFullVerkey(info.did, info.verkey);
-        validateKey(verkey);
-        TheirDid result = new TheirDid(info.did, verkey);
-        return result;
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            String verkey = Utils.buildFullVerkey(info.did, info.verkey);
+            validateKey(verkey);
+            TheirDid result = new TheirDid(info.did, verkey);
+            success = true;
+            return result;
+        } finally {
+            metrics.record(Operation.CREATE_THEIR_DID, 0, System.nanoTime() - start, success);
+        }
     }
     
     public ComboBox comboBox(Keys sender, Keys receiver, byte[] data) throws CryptoException, SodiumException{
-        LOG.debug(String.format("Combobox encrypt: my pk: &s their pk: %s", sender.verkey, receiver.verkey));
+        LOG.debug("Combobox encrypt: my pk: {} their pk: {}", sender.verkey, receiver.verkey);
         
         CryptoBox box = cryptoBox(data, sender, receiver);
         ComboBox result = new ComboBox(
@@ -118,6 +280,13 @@ public class CryptoService {
         return result;
     }
     
+    public ComboBoxBinary comboBoxBinary(Keys sender, Keys receiver, byte[] data) throws CryptoException, SodiumException{
+        LOG.debug("Combobox encrypt: my pk: {} their pk: {}", sender.verkey, receiver.verkey);
+        
+        CryptoBox box = cryptoBox(data, sender, receiver);
+        return new ComboBoxBinary(box.cipher, sender.verkey, box.nonce);
+    }
+    
     
     /*
      * Public-key authenticated encryption
@@ -159,181 +328,713 @@ public class CryptoService {
      * described in subsequent `NaCl` documentation.
      */
     public CryptoBox cryptoBox(byte[] data, Keys sender, Keys receiver) throws CryptoException, SodiumException{
-        LOG.debug(String.format("Cryptobox encrypt: my pk: %s their pk: %s", sender.verkey, receiver.verkey));
+        LOG.debug("Cryptobox encrypt: my pk: {} their pk: {}", sender.verkey, receiver.verkey);
         
-        String verkey;
-        String type1, type2;
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            String verkey;
+            String type1, type2;
         
-        if(receiver.verkey.contains(":")){
-            String[] splits = receiver.verkey.split(":");
-            type2 = splits[1];
-        } else {
-            type2 = CryptoType.DEFAULT_CRYPTO_TYPE.getName();
-        }
+            if(receiver.verkey.contains(":")){
+                String[] splits = receiver.verkey.split(":");
+                type2 = splits[1];
+            } else {
+                type2 = CryptoType.DEFAULT_CRYPTO_TYPE.getName();
+            }
         
-        if(CryptoType.toType(type2) == null){
-            throw new CryptoException(String.format("Trying to use key with unknown crypto: %s", type2));
-        }
+            if(CryptoType.toType(type2) == null){
+                throw new CryptoException(String.format("Trying to use key with unknown crypto: %s", type2));
+            }
         
-        if(sender.verkey.contains(":")){
-            String[] splits = sender.verkey.split(":");
-            verkey = splits[0];
-            type1 = splits[1];
-        } else {
-            verkey = sender.verkey;
-            type1 = CryptoType.DEFAULT_CRYPTO_TYPE.getName();
+            if(sender.verkey.contains(":")){
+                String[] splits = sender.verkey.split(":");
+                verkey = splits[0];
+                type1 = splits[1];
+            } else {
+                verkey = sender.verkey;
+                type1 = CryptoType.DEFAULT_CRYPTO_TYPE.getName();
+            }
+        
+            if(!type1.equals(type2)){
+                LOG.error(String.format("My key crypto type is incompatible with their key crypto type: %s %s", type1, type2));
+                return null;
+            }
+        
+            ICrypto crypto = CryptoFactory.getCrypto(type2);
+            byte[] sk = decode(receiver.signkey);
+            byte[] pk = decode(verkey);
+            byte[] nonce = boxNonce(crypto, stripType(receiver.verkey));
+            byte[] cipher = crypto.cryptoBox(data, nonce, pk, sk);
+            CryptoBox result = new CryptoBox(cipher, nonce);
+            success = true;
+            return result;
+        } finally {
+            metrics.record(Operation.CRYPTO_BOX, data.length, System.nanoTime() - start, success);
         }
+    }
+    
+    public CryptoBox cryptoBox(byte[] data, KeyHandle sender, KeyHandle receiver) throws CryptoException, SodiumException{
+        LOG.debug("Cryptobox encrypt: my pk: {} their pk: {}", sender, receiver);
         
-        if(!type1.equals(type2)){
-            LOG.error(String.format("My key crypto type is incompatible with their key crypto type: %s %s", type1, type2));
-            return null;
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            checkCompatible(sender, receiver);
+            byte[] nonce = boxNonce(receiver.crypto, receiver.id());
+            byte[] cipher = receiver.crypto.cryptoBox(data, nonce, sender.verkey, signkey(receiver));
+            CryptoBox result = new CryptoBox(cipher, nonce);
+            success = true;
+            return result;
+        } finally {
+            metrics.record(Operation.CRYPTO_BOX, data.length, System.nanoTime() - start, success);
         }
+    }
+    
+    /*
+     * cryptoBox with the own secret key held off heap.
+     */
+    public CryptoBox cryptoBox(byte[] data, Keys sender, SecretKey receiver) throws CryptoException, SodiumException{
+        LOG.debug("Cryptobox encrypt: my pk: {} their pk: {}", sender.verkey, receiver.verkey);
         
-        ICrypto crypto = CryptoFactory.getCrypto(type2);
-        byte[] sk = Base58.decode(receiver.signkey);
-        byte[] pk = Base58.decode(verkey);
-        byte[] nonce = crypto.genNonce();
-        byte[] cipher = crypto.cryptoBox(data, nonce, pk, sk);
-        CryptoBox result = new CryptoBox(cipher, nonce);
-        return result;
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            ICrypto crypto = crypto(receiver.verkey);
+            checkCompatible(crypto(sender.verkey), crypto);
+            byte[] nonce = boxNonce(crypto, stripType(receiver.verkey));
+            byte[] cipher = crypto.cryptoBox(data, nonce, decode(stripType(sender.verkey)), receiver);
+            CryptoBox result = new CryptoBox(cipher, nonce);
+            success = true;
+            return result;
+        } finally {
+            metrics.record(Operation.CRYPTO_BOX, data.length, System.nanoTime() - start, success);
+        }
     }
     
     public byte[] cryptoBoxOpen(byte[] cipher, byte[] nonce, Keys sender, Keys receiver) throws CryptoException, SodiumException{
-        LOG.debug(String.format("Cryptobox decrypt: my pk: %s their pk: %s", sender.verkey, receiver.verkey));
+        LOG.debug("Cryptobox decrypt: my pk: {} their pk: {}", sender.verkey, receiver.verkey);
         
-        String  verkey;
-        String type1, type2;
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            String  verkey;
+            String type1, type2;
         
-        if(receiver.verkey.contains(":")){
-            String[] splits = receiver.verkey.split(":");
-            type2 = splits[1];
-        } else {
-            type2 = CryptoType.DEFAULT_CRYPTO_TYPE.getName();
+            if(receiver.verkey.contains(":")){
+                String[] splits = receiver.verkey.split(":");
+                type2 = splits[1];
+            } else {
+                type2 = CryptoType.DEFAULT_CRYPTO_TYPE.getName();
+            }
+        
+            if(CryptoType.toType(type2) == null){
+                throw new CryptoException(String.format("Trying to use key with unknown crypto: %s", type2));
+            }
+        
+            if(sender.verkey.contains(":")){
+                String[] splits = sender.verkey.split(":");
+                verkey = splits[0];
+                type1 = splits[1];
+            } else {
+                verkey = sender.verkey;
+                type1 = CryptoType.DEFAULT_CRYPTO_TYPE.getName();
+            }
+        
+            if(!type2.equals(type1)){
+                throw new CryptoException(String.format("My key crypto type is incompatible with their key crypto type: %s must be %s", type1, type2));
+            }
+        
+            ICrypto crypto = CryptoFactory.getCrypto(type2);
+            byte[] sk = decode(receiver.signkey);
+            byte[] pk = decode(verkey);
+            byte[] data = crypto.cryptoBoxOpen(cipher, nonce, pk, sk);
+            success = true;
+            return data;
+        } finally {
+            metrics.record(Operation.CRYPTO_BOX_OPEN, cipher.length, System.nanoTime() - start, success);
         }
+    }
+    
+    /*
+     * ByteBuffer variant of cryptoBox: the generated nonce is written to nonce and the
+     * cipher to out, both buffers are advanced. Returns the number of cipher bytes written.
+     */
+    public int cryptoBox(ByteBuffer data, KeyHandle sender, KeyHandle receiver, ByteBuffer nonce, ByteBuffer out) throws CryptoException, SodiumException{
+        LOG.debug("Cryptobox encrypt: my pk: {} their pk: {}", sender, receiver);
         
-        if(CryptoType.toType(type2) == null){
-            throw new CryptoException(String.format("Trying to use key with unknown crypto: %s", type2));
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            checkCompatible(sender, receiver);
+            byte[] generated = boxNonce(receiver.crypto, receiver.id());
+            if(nonce.remaining() < generated.length){
+                throw new BufferOverflowException();
+            }
+            int result = receiver.crypto.cryptoBox(data, ByteBuffer.wrap(generated), ByteBuffer.wrap(sender.verkey), ByteBuffer.wrap(signkey(receiver)), out);
+            nonce.put(generated);
+            success = true;
+            return result;
+        } finally {
+            metrics.record(Operation.CRYPTO_BOX, data.remaining(), System.nanoTime() - start, success);
         }
+    }
+    
+    public byte[] cryptoBoxOpen(byte[] cipher, byte[] nonce, KeyHandle sender, KeyHandle receiver) throws CryptoException, SodiumException{
+        LOG.debug("Cryptobox decrypt: my pk: {} their pk: {}", sender, receiver);
         
-        if(sender.verkey.contains(":")){
-            String[] splits = sender.verkey.split(":");
-            verkey = splits[0];
-            type1 = splits[1];
-        } else {
-            verkey = sender.verkey;
-            type1 = CryptoType.DEFAULT_CRYPTO_TYPE.getName();
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            checkCompatible(sender, receiver);
+            byte[] data = receiver.crypto.cryptoBoxOpen(cipher, nonce, sender.verkey, signkey(receiver));
+            success = true;
+            return data;
+        } finally {
+            metrics.record(Operation.CRYPTO_BOX_OPEN, cipher.length, System.nanoTime() - start, success);
         }
+    }
+    
+    public byte[] cryptoBoxOpen(byte[] cipher, byte[] nonce, Keys sender, SecretKey receiver) throws CryptoException, SodiumException{
+        LOG.debug("Cryptobox decrypt: my pk: {} their pk: {}", sender.verkey, receiver.verkey);
         
-        if(!type2.equals(type1)){
-            throw new CryptoException(String.format("My key crypto type is incompatible with their key crypto type: %s must be %s", type1, type2));
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            ICrypto crypto = crypto(receiver.verkey);
+            checkCompatible(crypto(sender.verkey), crypto);
+            byte[] data = crypto.cryptoBoxOpen(cipher, nonce, decode(stripType(sender.verkey)), receiver);
+            success = true;
+            return data;
+        } finally {
+            metrics.record(Operation.CRYPTO_BOX_OPEN, cipher.length, System.nanoTime() - start, success);
         }
+    }
+    
+    public int cryptoBoxOpen(ByteBuffer cipher, ByteBuffer nonce, KeyHandle sender, KeyHandle receiver, ByteBuffer out) throws CryptoException, SodiumException{
+        LOG.debug("Cryptobox decrypt: my pk: {} their pk: {}", sender, receiver);
         
-        ICrypto crypto = CryptoFactory.getCrypto(type2);
-        byte[] sk = Base58.decode(receiver.signkey);
-        byte[] pk = Base58.decode(verkey);
-        byte[] data = crypto.cryptoBoxOpen(cipher, nonce, pk, sk);
-        return data;
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            checkCompatible(sender, receiver);
+            int result = receiver.crypto.cryptoBoxOpen(cipher, nonce, ByteBuffer.wrap(sender.verkey), ByteBuffer.wrap(signkey(receiver)), out);
+            success = true;
+            return result;
+        } finally {
+            metrics.record(Operation.CRYPTO_BOX_OPEN, cipher.remaining(), System.nanoTime() - start, success);
+        }
     }
     
     public byte[] cryptoBoxSeal(Keys keys, byte[] data) throws CryptoException, SodiumException{
-        LOG.debug(String.format("Cryptobox seal encrypt pk: %s (sk: %s)", keys.verkey, keys.signkey));
+        LOG.debug("Cryptobox seal encrypt pk: {} (sk: {})", keys.verkey, keys.signkey);
 
-        String verkey;
-        String type;
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            String verkey;
+            String type;
         
-        if(keys.verkey.contains(":")){
-            String[] splits = keys.verkey.split(":");
-            verkey = splits[0];
-            type = splits[1];
-        } else {
-            verkey = keys.verkey;
-            type = CryptoType.DEFAULT_CRYPTO_TYPE.getName();
+            if(keys.verkey.contains(":")){
+                String[] splits = keys.verkey.split(":");
+                verkey = splits[0];
+                type = splits[1];
+            } else {
+                verkey = keys.verkey;
+                type = CryptoType.DEFAULT_CRYPTO_TYPE.getName();
+            }
+        
+            if(CryptoType.toType(type) == null){
+                throw new CryptoException(String.format("Trying to use key with unknown crypto: %s", type));
+            }
+        
+            ICrypto crypto = CryptoFactory.getCrypto(type);
+            byte[] pk = decode(verkey);
+            byte[] result = crypto.cryptoBoxSeal(data, pk);
+            success = true;
+            return result;
+        } finally {
+            metrics.record(Operation.CRYPTO_BOX_SEAL, data.length, System.nanoTime() - start, success);
+        }
+    }
+    
+    public byte[] cryptoBoxSeal(KeyHandle keys, byte[] data) throws SodiumException{
+        LOG.debug("Cryptobox seal encrypt pk: {}", keys);
+        
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            byte[] result = keys.crypto.cryptoBoxSeal(data, keys.verkey);
+            success = true;
+            return result;
+        } finally {
+            metrics.record(Operation.CRYPTO_BOX_SEAL, data.length, System.nanoTime() - start, success);
         }
+    }
+    
+    public int cryptoBoxSeal(KeyHandle keys, ByteBuffer data, ByteBuffer out) throws SodiumException{
+        LOG.debug("Cryptobox seal encrypt pk: {}", keys);
         
-        if(CryptoType.toType(type) == null){
-            throw new CryptoException(String.format("Trying to use key with unknown crypto: %s", type));
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            int result = keys.crypto.cryptoBoxSeal(data, ByteBuffer.wrap(keys.verkey), out);
+            success = true;
+            return result;
+        } finally {
+            metrics.record(Operation.CRYPTO_BOX_SEAL, data.remaining(), System.nanoTime() - start, success);
         }
+    }
+    
+    /*
+     * Seals the same data to every recipient verkey, recipients are sealed in parallel on
+     * the common fork-join pool. The cipher for recipients.get(i) is written to out[i];
+     * a recipient that fails (bad verkey, unknown crypto, ...) leaves out[i] null and is
+     * reported in the returned map under its index, the others are not affected. The map
+     * is empty if every recipient was sealed.
+     */
+    public Map<Integer, Exception> cryptoBoxSealAll(List<String> recipients, byte[] data, byte[][] out){
+        LOG.debug("Cryptobox seal encrypt for {} recipients", recipients.size());
         
-        ICrypto crypto = CryptoFactory.getCrypto(type);
-        byte[] pk = Base58.decode(verkey);
-        byte[] result = crypto.cryptoBoxSeal(data, pk);
+        return sealAll(recipients.size(), data, out, i -> {
+            String verkey = recipients.get(i);
+            return crypto(verkey).cryptoBoxSeal(data, decode(stripType(verkey)));
+        });
+    }
+    
+    public Map<Integer, Exception> cryptoBoxSealAll(KeyHandle[] recipients, byte[] data, byte[][] out){
+        LOG.debug("Cryptobox seal encrypt for {} recipients", recipients.length);
+        
+        return sealAll(recipients.length, data, out, i -> recipients[i].crypto.cryptoBoxSeal(data, recipients[i].verkey));
+    }
+    
+    private Map<Integer, Exception> sealAll(int count, byte[] data, byte[][] out, Seal seal){
+        if(out.length < count){
+            throw new IllegalArgumentException(String.format("Output for %d recipients, %d expected", out.length, count));
+        }
+        
+        long start = System.nanoTime();
+        Exception[] errors = new Exception[count];
+        IntStream range = IntStream.range(0, count);
+        if(count >= SEAL_PARALLEL_THRESHOLD){
+            range = range.parallel();
+        }
+        range.forEach(i -> {
+            try {
+                out[i] = seal.seal(i);
+            } catch(Exception e){
+                out[i] = null;
+                errors[i] = e;
+            }
+        });
+        
+        Map<Integer, Exception> result = new TreeMap<>();
+        for(int i = 0; i < count; i++){
+            if(errors[i] != null){
+                result.put(i, errors[i]);
+            }
+        }
+        metrics.record(Operation.CRYPTO_BOX_SEAL_ALL, (int) Math.min((long) data.length * count, Integer.MAX_VALUE), System.nanoTime() - start, result.isEmpty());
         return result;
     }
     
-    public byte[] cryptoBoxSealOpen(Keys keys, byte[] cipher) throws CryptoException, SodiumException{
-        LOG.debug(String.format("Cryptobox seal decrypt pk: %s (sk: %s)", keys.verkey, keys.signkey));
-
-        String verkey;
-        String type;
+    @FunctionalInterface
+    private interface Seal {
+        byte[] seal(int index) throws Exception;
+    }
+    
+    /*
+     * Encrypts the data once for all the recipient verkeys. With a sender the content key
+     * is authenticated (authcrypt) and the recipients learn the sender verkey, with a null
+     * sender it is anonymous (anoncrypt). The recipient header is authenticated with the
+     * payload, see {@link Envelope#header()}.
+     */
+    public Envelope pack(byte[] data, List<String> recipients, Keys sender) throws CryptoException, SodiumException{
+        LOG.debug("Pack {} bytes for {} recipients", data.length, recipients.size());
         
-        if(keys.verkey.contains(":")){
-            String[] splits = keys.verkey.split(":");
-            verkey = splits[0];
-            type = splits[1];
-        } else {
-            verkey = keys.verkey;
-            type = CryptoType.DEFAULT_CRYPTO_TYPE.getName();
+        long start = System.nanoTime();
+        boolean success = false;
+        byte[] key = RandomPool.nextBytes(CONTENT_KEY_BYTES);
+        try {
+            ICrypto senderCrypto = sender == null ? null : crypto(sender.verkey);
+            String senderVerkey = sender == null ? null : stripType(sender.verkey);
+            byte[] senderSk = sender == null ? null : decode(sender.signkey);
+            
+            Map<String, Envelope.Recipient> wrapped = new HashMap<>();
+            for(String recipient : recipients){
+                ICrypto crypto = crypto(recipient);
+                String verkey = stripType(recipient);
+                byte[] pk = decode(verkey);
+                if(sender == null){
+                    wrapped.put(verkey, new Envelope.Recipient(crypto.cryptoBoxSeal(key, pk), null, null));
+                    continue;
+                }
+                if(crypto != senderCrypto){
+                    throw new CryptoException(String.format("Recipient %s crypto type is incompatible with sender crypto type", recipient));
+                }
+                byte[] boxNonce = boxNonce(crypto, senderVerkey);
+                wrapped.put(verkey, new Envelope.Recipient(
+                        crypto.cryptoBox(key, boxNonce, pk, senderSk),
+                        boxNonce,
+                        crypto.cryptoBoxSeal(senderVerkey.getBytes(StandardCharsets.UTF_8), pk)));
+            }
+            
+            byte[] nonce = RandomPool.nextBytes(CRYPTO_AEAD_CHACHA20POLY1305_IETF_NONCEBYTES);
+            Envelope result = new Envelope(sender == null ? Envelope.ANONCRYPT : Envelope.AUTHCRYPT, null, nonce, null, wrapped);
+            Map<String, byte[]> encrypted = Crypto_aead_chacha20poly1305_ietf.encrypt_detached(data, result.header(), nonce, key);
+            result.cipher = encrypted.get("cipher");
+            result.tag = encrypted.get("tag");
+            success = true;
+            return result;
+        } finally {
+            Arrays.fill(key, (byte) 0);
+            metrics.record(Operation.PACK, data.length, System.nanoTime() - start, success);
         }
+    }
+    
+    /*
+     * Decrypts an envelope with the keys of one of its recipients. Returns the data and
+     * the sender verkey, which is null for anoncrypt.
+     */
+    public Pair<byte[], String> unpack(Envelope envelope, Keys keys) throws CryptoException, SodiumException{
+        LOG.debug("Unpack {} for {}", envelope, keys.verkey);
         
+        long start = System.nanoTime();
+        boolean success = false;
+        byte[] key = null;
+        try {
+            ICrypto crypto = crypto(keys.verkey);
+            String verkey = stripType(keys.verkey);
+            Envelope.Recipient recipient = envelope.recipients == null ? null : envelope.recipients.get(verkey);
+            if(recipient == null){
+                throw new CryptoException(String.format("Key %s is not a recipient of the envelope", verkey));
+            }
+            
+            byte[] pk = decode(verkey);
+            byte[] sk = decode(keys.signkey);
+            String sender = null;
+            if(Envelope.AUTHCRYPT.equals(envelope.alg)){
+                if(recipient.nonce == null || recipient.sender == null){
+                    throw new CryptoException("Invalid authcrypt recipient");
+                }
+                sender = new String(crypto.cryptoBoxSealOpen(recipient.sender, pk, sk), StandardCharsets.UTF_8);
+                key = crypto.cryptoBoxOpen(recipient.key, recipient.nonce, decode(sender), sk);
+            } else if(Envelope.ANONCRYPT.equals(envelope.alg)){
+                key = crypto.cryptoBoxSealOpen(recipient.key, pk, sk);
+            } else {
+                throw new CryptoException(String.format("Unknown envelope algorithm: %s", envelope.alg));
+            }
+            
+            byte[] data = Crypto_aead_chacha20poly1305_ietf.decrypt_detached(envelope.cipher, envelope.tag, envelope.header(), envelope.nonce, key);
+            success = true;
+            return Pair.create(data, sender);
+        } finally {
+            if(key != null){
+                Arrays.fill(key, (byte) 0);
+            }
+            metrics.record(Operation.UNPACK, envelope.cipher == null ? 0 : envelope.cipher.length, System.nanoTime() - start, success);
+        }
+    }
+    
+    /*
+     * Crypto of a verkey with an optional ":type" suffix.
+     */
+    private static ICrypto crypto(String verkey) throws CryptoException{
+        int index = verkey.indexOf(':');
+        String type = index < 0 ? CryptoType.DEFAULT_CRYPTO_TYPE.getName() : verkey.substring(index + 1);
         if(CryptoType.toType(type) == null){
             throw new CryptoException(String.format("Trying to use key with unknown crypto: %s", type));
         }
+        return CryptoFactory.getCrypto(type);
+    }
+    
+    private static String stripType(String verkey){
+        int index = verkey.indexOf(':');
+        return index < 0 ? verkey : verkey.substring(0, index);
+    }
+    
+    public byte[] cryptoBoxSealOpen(Keys keys, byte[] cipher) throws CryptoException, SodiumException{
+        LOG.debug("Cryptobox seal decrypt pk: {} (sk: {})", keys.verkey, keys.signkey);
+
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            String verkey;
+            String type;
         
-        ICrypto crypto = CryptoFactory.getCrypto(type);
-        byte[] pk = Base58.decode(verkey);
-        byte[] sk = Base58.decode(keys.signkey);
-        byte[] result = crypto.cryptoBoxSealOpen(cipher, pk, sk);
-        return result;
+            if(keys.verkey.contains(":")){
+                String[] splits = keys.verkey.split(":");
+                verkey = splits[0];
+                type = splits[1];
+            } else {
+                verkey = keys.verkey;
+                type = CryptoType.DEFAULT_CRYPTO_TYPE.getName();
+            }
+        
+            if(CryptoType.toType(type) == null){
+                throw new CryptoException(String.format("Trying to use key with unknown crypto: %s", type));
+            }
+        
+            ICrypto crypto = CryptoFactory.getCrypto(type);
+            byte[] pk = decode(verkey);
+            byte[] sk = decode(keys.signkey);
+            byte[] result = crypto.cryptoBoxSealOpen(cipher, pk, sk);
+            success = true;
+            return result;
+        } finally {
+            metrics.record(Operation.CRYPTO_BOX_SEAL_OPEN, cipher.length, System.nanoTime() - start, success);
+        }
+    }
+    
+    public byte[] cryptoBoxSealOpen(KeyHandle keys, byte[] cipher) throws CryptoException, SodiumException{
+        LOG.debug("Cryptobox seal decrypt pk: {}", keys);
+        
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            byte[] result = keys.crypto.cryptoBoxSealOpen(cipher, keys.verkey, signkey(keys));
+            success = true;
+            return result;
+        } finally {
+            metrics.record(Operation.CRYPTO_BOX_SEAL_OPEN, cipher.length, System.nanoTime() - start, success);
+        }
+    }
+    
+    public byte[] cryptoBoxSealOpen(SecretKey keys, byte[] cipher) throws CryptoException, SodiumException{
+        LOG.debug("Cryptobox seal decrypt pk: {}", keys.verkey);
+        
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            byte[] result = crypto(keys.verkey).cryptoBoxSealOpen(cipher, decode(stripType(keys.verkey)), keys);
+            success = true;
+            return result;
+        } finally {
+            metrics.record(Operation.CRYPTO_BOX_SEAL_OPEN, cipher.length, System.nanoTime() - start, success);
+        }
+    }
+    
+    public int cryptoBoxSealOpen(KeyHandle keys, ByteBuffer cipher, ByteBuffer out) throws CryptoException, SodiumException{
+        LOG.debug("Cryptobox seal decrypt pk: {}", keys);
+        
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            int result = keys.crypto.cryptoBoxSealOpen(cipher, ByteBuffer.wrap(keys.verkey), ByteBuffer.wrap(signkey(keys)), out);
+            success = true;
+            return result;
+        } finally {
+            metrics.record(Operation.CRYPTO_BOX_SEAL_OPEN, cipher.remaining(), System.nanoTime() - start, success);
+        }
     }
     
     public byte[] sign(byte[] data, Keys keys) throws SodiumException, CryptoException {
-        LOG.debug(String.format("pk: %s (sk: %s)", keys.verkey, keys.signkey));
+        LOG.debug("pk: {} (sk: {})", keys.verkey, keys.signkey);
 
-        String type;
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            String type;
         
-        if(keys.verkey.contains(":")){
-            String[] splits = keys.verkey.split(":");
-            type = splits[1];
-        } else {
-            type = CryptoType.DEFAULT_CRYPTO_TYPE.getName();
+            if(keys.verkey.contains(":")){
+                String[] splits = keys.verkey.split(":");
+                type = splits[1];
+            } else {
+                type = CryptoType.DEFAULT_CRYPTO_TYPE.getName();
+            }
+        
+            if(CryptoType.toType(type) == null){
+                throw new CryptoException(String.format("Trying to use key with unknown crypto: %s", type));
+            }
+        
+            ICrypto crypto = CryptoFactory.getCrypto(type);
+            byte[] result = crypto.sign(data, decode(keys.signkey));
+
+            success = true;
+            return result;
+        } finally {
+            metrics.record(Operation.SIGN, data.length, System.nanoTime() - start, success);
         }
+    }
+    
+    public byte[] sign(byte[] data, KeyHandle keys) throws SodiumException, CryptoException {
+        LOG.debug("pk: {}", keys);
         
-        if(CryptoType.toType(type) == null){
-            throw new CryptoException(String.format("Trying to use key with unknown crypto: %s", type));
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            byte[] result = keys.crypto.sign(data, signkey(keys));
+            success = true;
+            return result;
+        } finally {
+            metrics.record(Operation.SIGN, data.length, System.nanoTime() - start, success);
         }
+    }
+    
+    public byte[] sign(byte[] data, SecretKey keys) throws SodiumException, CryptoException {
+        LOG.debug("pk: {}", keys.verkey);
         
-        ICrypto crypto = CryptoFactory.getCrypto(type);
-        byte[] result = crypto.sign(data, Base58.decode(keys.signkey));
-
-        return result;
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            byte[] result = crypto(keys.verkey).sign(data, keys);
+            success = true;
+            return result;
+        } finally {
+            metrics.record(Operation.SIGN, data.length, System.nanoTime() - start, success);
+        }
+    }
+    
+    public int sign(ByteBuffer data, KeyHandle keys, ByteBuffer out) throws SodiumException, CryptoException {
+        LOG.debug("pk: {}", keys);
+        
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            int result = keys.crypto.sign(data, ByteBuffer.wrap(signkey(keys)), out);
+            success = true;
+            return result;
+        } finally {
+            metrics.record(Operation.SIGN, data.remaining(), System.nanoTime() - start, success);
+        }
     }
     
     public boolean verify(byte[] data, byte[] sign, Keys keys) throws SodiumException, CryptoException {
-        LOG.debug(String.format("pk: %s (sk: %s)", keys.verkey, keys.signkey));
+        LOG.debug("pk: {} (sk: {})", keys.verkey, keys.signkey);
 
-        String verkey;
-        String type;
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            String verkey;
+            String type;
         
-        if(keys.verkey.contains(":")){
-            String[] splits = keys.verkey.split(":");
-            verkey = splits[0];
-            type = splits[1];
-        } else {
-            verkey = keys.verkey;
-            type = CryptoType.DEFAULT_CRYPTO_TYPE.getName();
+            if(keys.verkey.contains(":")){
+                String[] splits = keys.verkey.split(":");
+                verkey = splits[0];
+                type = splits[1];
+            } else {
+                verkey = keys.verkey;
+                type = CryptoType.DEFAULT_CRYPTO_TYPE.getName();
+            }
+        
+            if(CryptoType.toType(type) == null){
+                throw new CryptoException(String.format("Trying to use key with unknown crypto: %s", type));
+            }
+        
+            ICrypto crypto = CryptoFactory.getCrypto(type);
+            boolean result = crypto.verify(data, sign, decode(verkey));
+            success = true;
+            return result;
+        } finally {
+            metrics.record(Operation.VERIFY, data.length, System.nanoTime() - start, success);
         }
+    }
+    
+    public boolean verify(byte[] data, byte[] sign, KeyHandle keys) throws SodiumException {
+        LOG.debug("pk: {}", keys);
         
-        if(CryptoType.toType(type) == null){
-            throw new CryptoException(String.format("Trying to use key with unknown crypto: %s", type));
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            boolean result = keys.crypto.verify(data, sign, keys.verkey);
+            success = true;
+            return result;
+        } finally {
+            metrics.record(Operation.VERIFY, data.length, System.nanoTime() - start, success);
         }
+    }
+    
+    public boolean verify(ByteBuffer data, ByteBuffer sign, KeyHandle keys) throws SodiumException {
+        LOG.debug("pk: {}", keys);
         
-        ICrypto crypto = CryptoFactory.getCrypto(type);
-        boolean result = crypto.verify(data, sign, Base58.decode(verkey));
-        return result;
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            boolean result = keys.crypto.verify(data, sign, ByteBuffer.wrap(keys.verkey));
+            success = true;
+            return result;
+        } finally {
+            metrics.record(Operation.VERIFY, data.remaining(), System.nanoTime() - start, success);
+        }
+    }
+    
+    /*
+     * Verifies a batch of signatures in one pass. Items are grouped by crypto type,
+     * each distinct verkey is decoded only once and every group is handed to its
+     * crypto in a single call. Returns a bitmap with the indexes of the valid items
+     * set; items with an unknown crypto type, a malformed verkey or a bad signature
+     * are left unset instead of failing the whole batch.
+     */
+    public BitSet verifyAll(List<SignedItem> items) {
+        LOG.debug("Verify {} signatures", items.size());
+
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            Map<String, byte[]> decoded = new HashMap<>();
+            Map<CryptoType, List<Integer>> groups = new EnumMap<>(CryptoType.class);
+            byte[][] pks = new byte[items.size()][];
+        
+            for(int i = 0; i < items.size(); i++){
+                Keys keys = items.get(i).keys;
+            
+                String verkey;
+                String type;
+            
+                if(keys.verkey.contains(":")){
+                    String[] splits = keys.verkey.split(":");
+                    verkey = splits[0];
+                    type = splits[1];
+                } else {
+                    verkey = keys.verkey;
+                    type = CryptoType.DEFAULT_CRYPTO_TYPE.getName();
+                }
+            
+                CryptoType cryptoType = CryptoType.toType(type);
+                if(cryptoType == null){
+                    LOG.error(String.format("Trying to use key with unknown crypto: %s", type));
+                    continue;
+                }
+            
+                try {
+                    pks[i] = decoded.computeIfAbsent(verkey, this::decode);
+                } catch(AddressFormatException e){
+                    LOG.error(String.format("Invalid verkey %s: %s", verkey, e.getMessage()));
+                    continue;
+                }
+                groups.computeIfAbsent(cryptoType, k -> new ArrayList<>()).add(i);
+            }
+        
+            BitSet result = new BitSet(items.size());
+        
+            for(Map.Entry<CryptoType, List<Integer>> group : groups.entrySet()){
+                List<Integer> indexes = group.getValue();
+                byte[][] data = new byte[indexes.size()][];
+                byte[][] signatures = new byte[indexes.size()][];
+                byte[][] keys = new byte[indexes.size()][];
+            
+                for(int i = 0; i < indexes.size(); i++){
+                    SignedItem item = items.get(indexes.get(i));
+                    data[i] = item.data;
+                    signatures[i] = item.signature;
+                    keys[i] = pks[indexes.get(i)];
+                }
+            
+                ICrypto crypto = CryptoFactory.getCrypto(group.getKey());
+                BitSet verified = crypto.verifyAll(data, signatures, keys);
+                for(int i = verified.nextSetBit(0); i >= 0; i = verified.nextSetBit(i + 1)){
+                    result.set(indexes.get(i));
+                }
+            }
+            success = true;
+            return result;
+        } finally {
+            metrics.record(Operation.VERIFY_ALL, items.size(), System.nanoTime() - start, success);
+        }
     }
     
     public byte[] convertSeed(String seed) throws IllegalArgumentException{
-        LOG.debug(String.format("Convert seed: %s", seed == null ? "no seed" : seed));
+        LOG.debug("Convert seed: {}", seed == null ? "no seed" : seed);
 
         if (seed == null) {
             return null;
@@ -353,61 +1054,237 @@ public class CryptoService {
     }
     
     public boolean validateDid(String did){
-        LOG.debug(String.format("Validate did: %s", did == null ? "no did" : did));
+        LOG.debug("Validate did: {}", did == null ? "no did" : did);
         
         if(did == null){
             return false;
         }
         
-        byte[] bytes = Base58.decode(did);
-        if(bytes.length == 0x10 || bytes.length == 0x20){
+        if(validator.isValidDid(did)){
             return true;
         }
         
+        // not Base58: decoding throws the AddressFormatException describing the bad character
+        byte[] bytes = Base58.decode(did);
         LOG.error(String.format("Trying to use DID with unexpected length: %d. The 16- or 32-byte number upon which a DID is based should be 22/23 or 44/45 bytes when encoded as base58", bytes.length));
         return false;
     }
     
     public CryptoDetached encryptPlaintext(byte[] data, byte[] add, Keys keys) throws SodiumException, AddressFormatException{
+        return encryptPlaintextBinary(data, add, keys).toCryptoDetached();
+    }
+    
+    public CryptoDetached encryptPlaintext(byte[] data, byte[] add, KeyHandle keys) throws SodiumException, CryptoException{
+        return encryptPlaintextBinary(data, add, keys).toCryptoDetached();
+    }
+    
+    public CryptoDetached encryptPlaintext(byte[] data, byte[] add, SecretKey keys) throws SodiumException, CryptoException{
+        return encryptPlaintextBinary(data, add, keys).toCryptoDetached();
+    }
+    
+    /*
+     * encryptPlaintext returning raw bytes instead of Base64 strings.
+     */
+    public CryptoDetachedBinary encryptPlaintextBinary(byte[] data, byte[] add, Keys keys) throws SodiumException, AddressFormatException{
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            if(add == null){
+                add = new byte[0];
+            }
+        
+            byte[] signkey = decode(keys.signkey);
+            byte[] nonce = aeadNonce();
+        
+            Map<String, byte[]> result = Crypto_aead_chacha20poly1305_ietf.encrypt_detached(data, add, nonce, signkey);
+            CryptoDetachedBinary box = new CryptoDetachedBinary(result.get("cipher"), nonce, result.get("tag"));
         
-        if(add == null){
-            add = new byte[0];
+            success = true;
+            return box;
+        } finally {
+            metrics.record(Operation.ENCRYPT_PLAINTEXT, data.length, System.nanoTime() - start, success);
         }
+    }
+    
+    public CryptoDetachedBinary encryptPlaintextBinary(byte[] data, byte[] add, KeyHandle keys) throws SodiumException, CryptoException{
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            if(add == null){
+                add = new byte[0];
+            }
         
-        byte[] signkey = Base58.decode(keys.signkey);
-        byte[] nonce = new byte[CRYPTO_AEAD_CHACHA20POLY1305_IETF_NONCEBYTES];
-        Crypto_randombytes.increment(nonce);
+            byte[] nonce = aeadNonce();
         
-        Map<String, byte[]> result = Crypto_aead_chacha20poly1305_ietf.encrypt_detached(data, add, nonce, signkey);
+            Map<String, byte[]> result = Crypto_aead_chacha20poly1305_ietf.encrypt_detached(data, add, nonce, signkey(keys));
+            CryptoDetachedBinary box = new CryptoDetachedBinary(result.get("cipher"), nonce, result.get("tag"));
+        
+            success = true;
+            return box;
+        } finally {
+            metrics.record(Operation.ENCRYPT_PLAINTEXT, data.length, System.nanoTime() - start, success);
+        }
+    }
+    
+    public CryptoDetachedBinary encryptPlaintextBinary(byte[] data, byte[] add, SecretKey keys) throws SodiumException, CryptoException{
+        long start = System.nanoTime();
+        boolean success = false;
+        byte[] signkey = null;
+        try {
+            if(add == null){
+                add = new byte[0];
+            }
         
-        byte[] cipher = result.get("cipher");
-        byte[] tag = result.get("tag");
+            byte[] nonce = aeadNonce();
+            signkey = keys.toArray();
         
-        CryptoDetached box = new CryptoDetached(
-                Base64.getEncoder().encodeToString(cipher),
-                Base64.getEncoder().encodeToString(nonce),
-                Base64.getEncoder().encodeToString(tag));
+            Map<String, byte[]> result = Crypto_aead_chacha20poly1305_ietf.encrypt_detached(data, add, nonce, signkey);
+            CryptoDetachedBinary box = new CryptoDetachedBinary(result.get("cipher"), nonce, result.get("tag"));
         
-        return box;
+            success = true;
+            return box;
+        } finally {
+            if(signkey != null){
+                Arrays.fill(signkey, (byte) 0);
+            }
+            metrics.record(Operation.ENCRYPT_PLAINTEXT, data.length, System.nanoTime() - start, success);
+        }
+    }
+    
+    /*
+     * Nonce of a crypto_box sent with the key of the given Base58 verkey.
+     */
+    private byte[] boxNonce(ICrypto crypto, String id) throws SodiumException{
+        if(nonceSequencer == null){
+            return crypto.genNonce();
+        }
+        return nonceSequencer.next(id, CRYPTO_BOX_CURVE25519XCHACHA20POLY1305_NONCEBYTES);
+    }
+    
+    /*
+     * Nonce of encryptPlaintext: 12 bytes leave no room for a counter behind a prefix long
+     * enough to stay unique across restarts, so it is random.
+     */
+    private static byte[] aeadNonce() throws SodiumException{
+        return RandomPool.nextBytes(CRYPTO_AEAD_CHACHA20POLY1305_IETF_NONCEBYTES);
     }
     
     public String decryptPlaintext(CryptoDetached box, byte[] add, Keys keys) throws SodiumException, IllegalArgumentException, AddressFormatException{
+        return new String(decryptPlaintextBinary(CryptoDetachedBinary.from(box), add, keys));
+    }
+    
+    public String decryptPlaintext(CryptoDetached box, byte[] add, KeyHandle keys) throws SodiumException, CryptoException{
+        return new String(decryptPlaintextBinary(CryptoDetachedBinary.from(box), add, keys));
+    }
+    
+    public String decryptPlaintext(CryptoDetached box, byte[] add, SecretKey keys) throws SodiumException, CryptoException{
+        return new String(decryptPlaintextBinary(CryptoDetachedBinary.from(box), add, keys));
+    }
+    
+    public byte[] decryptPlaintextBinary(CryptoDetachedBinary box, byte[] add, Keys keys) throws SodiumException, AddressFormatException{
+        long start = System.nanoTime();
+        boolean success = false;
+        int size = 0;
+        try {
+            if (add == null) {
+                add = new byte[0];
+            }
         
-        if (add == null) {
-            add = new byte[0];
+            byte[] signkey = decode(keys.signkey);
+            size = box.cipher.length;
+            byte[] data = Crypto_aead_chacha20poly1305_ietf.decrypt_detached(box.cipher, box.tag, add, box.nonce, signkey);
+            success = true;
+            return data;
+        } finally {
+            metrics.record(Operation.DECRYPT_PLAINTEXT, size, System.nanoTime() - start, success);
         }
+    }
+    
+    public byte[] decryptPlaintextBinary(CryptoDetachedBinary box, byte[] add, KeyHandle keys) throws SodiumException, CryptoException{
+        long start = System.nanoTime();
+        boolean success = false;
+        int size = 0;
+        try {
+            if (add == null) {
+                add = new byte[0];
+            }
         
-        byte[] signkey = Base58.decode(keys.signkey);
-        byte[] cipher = Base64.getDecoder().decode(box.cipher);
-        byte[] nonce = Base64.getDecoder().decode(box.nonce);
-        byte[] tag = Base64.getDecoder().decode(box.tag);
-
-        byte[] data = Crypto_aead_chacha20poly1305_ietf.decrypt_detached(cipher, tag, add, nonce, signkey);
-        return new String(data);
+            size = box.cipher.length;
+            byte[] data = Crypto_aead_chacha20poly1305_ietf.decrypt_detached(box.cipher, box.tag, add, box.nonce, signkey(keys));
+            success = true;
+            return data;
+        } finally {
+            metrics.record(Operation.DECRYPT_PLAINTEXT, size, System.nanoTime() - start, success);
+        }
+    }
+    
+    public byte[] decryptPlaintextBinary(CryptoDetachedBinary box, byte[] add, SecretKey keys) throws SodiumException, CryptoException{
+        long start = System.nanoTime();
+        boolean success = false;
+        int size = 0;
+        byte[] signkey = keys.toArray();
+        try {
+            if (add == null) {
+                add = new byte[0];
+            }
+        
+            size = box.cipher.length;
+            byte[] data = Crypto_aead_chacha20poly1305_ietf.decrypt_detached(box.cipher, box.tag, add, box.nonce, signkey);
+            success = true;
+            return data;
+        } finally {
+            Arrays.fill(signkey, (byte) 0);
+            metrics.record(Operation.DECRYPT_PLAINTEXT, size, System.nanoTime() - start, success);
+        }
+    }
+    
+    /*
+     * Streaming counterparts of encryptPlaintext/decryptPlaintext for payloads too large
+     * to hold in memory. The payload is encrypted in authenticated chunks with a key
+     * derived from the signkey for every stream, see CryptoOutputStream for the format. Closing the returned encrypting stream
+     * or channel writes the final chunk and closes the underlying one.
+     */
+    public OutputStream encryptStream(OutputStream out, Keys keys) throws IOException, AddressFormatException{
+        return new CryptoOutputStream(out, decode(keys.signkey));
+    }
+    
+    public InputStream decryptStream(InputStream in, Keys keys) throws AddressFormatException{
+        return new CryptoInputStream(in, decode(keys.signkey));
+    }
+    
+    public WritableByteChannel encryptChannel(WritableByteChannel channel, Keys keys) throws IOException, AddressFormatException{
+        return Channels.newChannel(encryptStream(Channels.newOutputStream(channel), keys));
+    }
+    
+    public ReadableByteChannel decryptChannel(ReadableByteChannel channel, Keys keys) throws AddressFormatException{
+        return Channels.newChannel(decryptStream(Channels.newInputStream(channel), keys));
+    }
+    
+    private static byte[] signkey(KeyHandle keys) throws CryptoException{
+        if(keys.signkey == null){
+            throw new CryptoException(String.format("Signkey required but not present for %s", keys));
+        }
+        return keys.signkey;
+    }
+    
+    private static void checkCompatible(KeyHandle sender, KeyHandle receiver) throws CryptoException{
+        checkCompatible(sender.crypto, receiver.crypto);
+    }
+    
+    private static void checkCompatible(ICrypto sender, ICrypto receiver) throws CryptoException{
+        if(sender.getType() != receiver.getType()){
+            throw new CryptoException(String.format("My key crypto type is incompatible with their key crypto type: %s must be %s", 
+                    sender.getType().getName(), receiver.getType().getName()));
+        }
+    }
+    
+    private byte[] decode(String key) throws AddressFormatException{
+        BoundedCache<String, byte[]> cache = keyCache;
+        return cache == null ? Base58.decode(key) : cache.get(key, Base58::decode);
     }
     
     public void validateKey(String verkey) throws CryptoException, AddressFormatException{
-        LOG.debug(String.format("Validate did %s", verkey));
+        LOG.debug("Validate did {}", verkey);
         
         String key;
         String type;
@@ -426,9 +1303,12 @@ public class CryptoService {
         }
         
         ICrypto crypto = CryptoFactory.getCrypto(type);
-        if(key.startsWith("~")){
-            Base58.decode(key.substring(1));
-        } else {
+        if(!validator.isValidVerkey(key)){
+            // not Base58: decoding throws the AddressFormatException describing the bad character
+            Base58.decode(key.startsWith("~") ? key.substring(1) : key);
+            throw new CryptoException(String.format("Trying to use verkey with unexpected length: %s", key));
+        }
+        if(!key.startsWith("~")){
             crypto.validateKeys(key);
         }
     }
@@ -0,0 +1,183 @@
+/*
+ *
+ *  The MIT License
+ *
+ *  Copyright 2019 ITON Solutions.
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+
+package org.iton.jssi.crypto;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import org.iton.jssi.did.Did;
+import org.iton.jssi.did.MyDidInfo;
+import org.iton.jssi.util.Pair;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Creates DIDs in bulk with {@link CryptoService#createMyDid(MyDidInfo)}. The infos are read
+ * in windows of {@code windowSize}, each window is created in parallel on the common
+ * fork-join pool and handed to the sink before the next one is read, so memory stays bounded
+ * whatever the number of DIDs. In ordered mode the results reach the sink in input order;
+ * in unordered mode each result is passed on as soon as it is created. The sink is never
+ * called concurrently. To write the DIDs out, use a {@link org.iton.jssi.did.DidRecordWriter}
+ * with {@link org.iton.jssi.did.DidCodecs#MY_DID} as sink.
+ *
+ * @author ITON Solutions
+ */
+public class DidProvisioner {
+
+    private static final Logger LOG = LoggerFactory.getLogger(DidProvisioner.class);
+
+    public static final int DEFAULT_WINDOW_SIZE = 4096;
+    // below this number of DIDs a task is not split further
+    private static final int THRESHOLD = 16;
+
+    private final CryptoService service;
+    private int windowSize = DEFAULT_WINDOW_SIZE;
+    private boolean ordered = true;
+
+    public DidProvisioner(CryptoService service) {
+        this.service = service;
+    }
+
+    public int getWindowSize() {
+        return windowSize;
+    }
+
+    public void setWindowSize(int windowSize) {
+        if(windowSize <= 0){
+            throw new IllegalArgumentException(String.format("Invalid window size %d", windowSize));
+        }
+        this.windowSize = windowSize;
+    }
+
+    public boolean isOrdered() {
+        return ordered;
+    }
+
+    public void setOrdered(boolean ordered) {
+        this.ordered = ordered;
+    }
+
+    public long provision(Stream<MyDidInfo> infos, Consumer<Pair<Did, Keys>> sink) throws CryptoException {
+        return provision(infos.iterator(), sink);
+    }
+
+    /*
+     * Creates a DID for every info and returns the number created. The first failing
+     * info stops the provisioning with a CryptoException; the DIDs of earlier windows
+     * have been passed to the sink by then. In unordered mode so may have DIDs of the
+     * failing window created before the failure.
+     */
+    public long provision(Iterator<MyDidInfo> infos, Consumer<Pair<Did, Keys>> sink) throws CryptoException {
+        MyDidInfo[] window = new MyDidInfo[windowSize];
+        List<Pair<Did, Keys>> results = new ArrayList<>(Collections.nCopies(windowSize, null));
+        long count = 0;
+
+        while(infos.hasNext()){
+            int size = 0;
+            while(size < window.length && infos.hasNext()){
+                window[size++] = infos.next();
+            }
+
+            ProvisionTask task = new ProvisionTask(window, results, ordered ? null : sink, 0, size);
+            ForkJoinPool.commonPool().invoke(task);
+            if(task.error != null){
+                throw new CryptoException(String.format("Cannot create DID %d: %s", count + task.index, task.error.getMessage()));
+            }
+
+            if(ordered){
+                for(int i = 0; i < size; i++){
+                    sink.accept(results.get(i));
+                }
+            }
+            for(int i = 0; i < size; i++){
+                window[i] = null;
+                results.set(i, null);
+            }
+            count += size;
+            LOG.debug("Provisioned {} DIDs", count);
+        }
+        return count;
+    }
+
+    private class ProvisionTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final MyDidInfo[] infos;
+        // slots are set by index only, tasks never share one
+        private final List<Pair<Did, Keys>> results;
+        private final Consumer<Pair<Did, Keys>> sink;
+        private final int from;
+        private final int to;
+        // first failure of this task and its subtasks
+        Exception error;
+        int index;
+
+        ProvisionTask(MyDidInfo[] infos, List<Pair<Did, Keys>> results, Consumer<Pair<Did, Keys>> sink, int from, int to) {
+            this.infos = infos;
+            this.results = results;
+            this.sink = sink;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if(to - from <= THRESHOLD){
+                for(int i = from; i < to; i++){
+                    Pair<Did, Keys> result;
+                    try {
+                        result = service.createMyDid(infos[i]);
+                    } catch(Exception e){
+                        error = e;
+                        index = i;
+                        return;
+                    }
+                    if(sink == null){
+                        results.set(i, result);
+                    } else {
+                        synchronized(sink){
+                            sink.accept(result);
+                        }
+                    }
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            ProvisionTask left = new ProvisionTask(infos, results, sink, from, middle);
+            ProvisionTask right = new ProvisionTask(infos, results, sink, middle, to);
+            invokeAll(left, right);
+            ProvisionTask failed = left.error != null ? left : right;
+            error = failed.error;
+            index = failed.index;
+        }
+    }
+}
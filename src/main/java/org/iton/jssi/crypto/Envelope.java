@@ -0,0 +1,133 @@
+/*
+ *
+ *  The MIT License
+ *
+ *  Copyright 2019 ITON Solutions.
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+
+package org.iton.jssi.crypto;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Message encrypted once for several recipients: the payload is encrypted with a random
+ * content key (ChaCha20-Poly1305 IETF) and only the content key is encrypted for every
+ * recipient. Recipients are keyed by their Base58 verkey, so a recipient finds its wrapped
+ * key with one lookup. The algorithm and the recipients are authenticated as additional
+ * data of the payload, like the protected header of a DIDComm message, so a recipient entry
+ * cannot be removed, added or swapped unnoticed. Created by {@link CryptoService#pack} and
+ * opened by {@link CryptoService#unpack}.
+ *
+ * @author ITON Solutions
+ */
+public class Envelope {
+
+    public static final String AUTHCRYPT = "authcrypt";
+    public static final String ANONCRYPT = "anoncrypt";
+
+    public String alg;
+    public byte[] cipher;
+    public byte[] nonce;
+    public byte[] tag;
+    public Map<String, Recipient> recipients;
+
+    @JsonCreator
+    public Envelope(@JsonProperty("alg") String alg,
+            @JsonProperty("cipher") byte[] cipher,
+            @JsonProperty("nonce") byte[] nonce,
+            @JsonProperty("tag") byte[] tag,
+            @JsonProperty("recipients") Map<String, Recipient> recipients) {
+        this.alg = alg;
+        this.cipher = cipher;
+        this.nonce = nonce;
+        this.tag = tag;
+        this.recipients = recipients;
+    }
+
+    /*
+     * Content key encrypted for one recipient. With authcrypt the key is a crypto_box
+     * from the sender, whose verkey is sealed to the recipient; with anoncrypt the key
+     * is sealed and nonce and sender are null.
+     */
+    public static class Recipient {
+
+        public byte[] key;
+        public byte[] nonce;
+        public byte[] sender;
+
+        @JsonCreator
+        public Recipient(@JsonProperty("key") byte[] key,
+                @JsonProperty("nonce") byte[] nonce,
+                @JsonProperty("sender") byte[] sender) {
+            this.key = key;
+            this.nonce = nonce;
+            this.sender = sender;
+        }
+    }
+
+    /*
+     * Serialized header authenticated with the payload: the algorithm, then the recipients
+     * ordered by verkey with their key, nonce and sender. Every field is prefixed by its
+     * length, -1 for null.
+     */
+    byte[] header() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try(DataOutputStream out = new DataOutputStream(bytes)){
+            write(out, alg == null ? null : alg.getBytes(StandardCharsets.UTF_8));
+            Map<String, Recipient> sorted = recipients == null ? Collections.emptyMap() : new TreeMap<>(recipients);
+            out.writeInt(sorted.size());
+            for(Map.Entry<String, Recipient> entry : sorted.entrySet()){
+                Recipient recipient = entry.getValue();
+                write(out, entry.getKey().getBytes(StandardCharsets.UTF_8));
+                write(out, recipient == null ? null : recipient.key);
+                write(out, recipient == null ? null : recipient.nonce);
+                write(out, recipient == null ? null : recipient.sender);
+            }
+        } catch(IOException e){
+            // not thrown by an in-memory stream
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void write(DataOutputStream out, byte[] field) throws IOException {
+        if(field == null){
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(field.length);
+        out.write(field);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Envelope: {%s, %d bytes, %d recipients}", alg, cipher == null ? 0 : cipher.length, recipients == null ? 0 : recipients.size());
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ *
+ *  The MIT License
+ *
+ *  Copyright 2019 ITON Solutions.
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+
+package org.iton.jssi.crypto;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import org.iton.jssi.crypto.util.Histogram;
+
+/**
+ * {@link CryptoMetrics} keeping per operation counts, error counts, payload bytes and a
+ * latency histogram in memory. Recording is lock free and allocation free.
+ *
+ * @author ITON Solutions
+ */
+public class InMemoryCryptoMetrics implements CryptoMetrics {
+    
+    private final Map<Operation, Stats> stats = new EnumMap<>(Operation.class);
+    
+    public InMemoryCryptoMetrics(){
+        for(Operation operation : Operation.values()){
+            stats.put(operation, new Stats());
+        }
+    }
+
+    @Override
+    public void record(Operation operation, int size, long nanos, boolean success) {
+        Stats stat = stats.get(operation);
+        stat.count.increment();
+        stat.bytes.add(size);
+        if(!success){
+            stat.errors.increment();
+        }
+        stat.latency.record(nanos);
+    }
+    
+    public long getCount(Operation operation){
+        return stats.get(operation).count.sum();
+    }
+    
+    public long getErrors(Operation operation){
+        return stats.get(operation).errors.sum();
+    }
+    
+    public long getBytes(Operation operation){
+        return stats.get(operation).bytes.sum();
+    }
+    
+    public Histogram getLatency(Operation operation){
+        return stats.get(operation).latency;
+    }
+    
+    /*
+     * Latency in nanoseconds below which the given percentage of the operations completed.
+     */
+    public long getPercentile(Operation operation, double percentile){
+        return stats.get(operation).latency.getPercentile(percentile);
+    }
+    
+    public void reset(){
+        for(Stats stat : stats.values()){
+            stat.count.reset();
+            stat.errors.reset();
+            stat.bytes.reset();
+            stat.latency.reset();
+        }
+    }
+    
+    @Override
+    public String toString(){
+        StringBuilder builder = new StringBuilder("CryptoMetrics: {");
+        for(Map.Entry<Operation, Stats> entry : stats.entrySet()){
+            Stats stat = entry.getValue();
+            long count = stat.count.sum();
+            if(count == 0){
+                continue;
+            }
+            builder.append(String.format("%n  %s: count %d, errors %d, bytes %d, p50 %d ns, p99 %d ns, max %d ns",
+                    entry.getKey(), count, stat.errors.sum(), stat.bytes.sum(),
+                    stat.latency.getPercentile(50), stat.latency.getPercentile(99), stat.latency.getMax()));
+        }
+        return builder.append("}").toString();
+    }
+    
+    private static class Stats {
+        final LongAdder count = new LongAdder();
+        final LongAdder errors = new LongAdder();
+        final LongAdder bytes = new LongAdder();
+        final Histogram latency = new Histogram();
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ *
+ *  The MIT License
+ *
+ *  Copyright 2019 ITON Solutions.
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+
+package org.iton.jssi.crypto;
+
+import org.iton.jssi.crypto.util.Base58;
+import org.iton.jssi.crypto.algorithm.ICrypto;
+import org.iton.jssi.crypto.algorithm.ICrypto.CryptoType;
+
+/**
+ * Pre-parsed form of {@link Keys}: decoded key bytes plus the resolved crypto, so the
+ * operations of {@link CryptoService} taking a handle do no verkey parsing or Base58
+ * decoding. Handles are created once with {@link CryptoService#createKeyHandle(Keys)}
+ * or {@link CryptoService#createKeyHandle(KeyInfo)} and are immutable.
+ *
+ * @author ITON Solutions
+ */
+public final class KeyHandle {
+    
+    final byte[] verkey;
+    final byte[] signkey;
+    final ICrypto crypto;
+    // Base58 verkey, computed on first use
+    private String id;
+    
+    KeyHandle(byte[] verkey, byte[] signkey, ICrypto crypto){
+        this.verkey = verkey;
+        this.signkey = signkey;
+        this.crypto = crypto;
+    }
+    
+    public byte[] getVerkey(){
+        return verkey.clone();
+    }
+    
+    public byte[] getSignkey(){
+        return signkey == null ? null : signkey.clone();
+    }
+    
+    public boolean hasSignkey(){
+        return signkey != null;
+    }
+    
+    public ICrypto getCrypto(){
+        return crypto;
+    }
+    
+    public CryptoType getType(){
+        return crypto.getType();
+    }
+    
+    String id(){
+        if(id == null){
+            id = Base58.encode(verkey);
+        }
+        return id;
+    }
+    
+    public Keys toKeys(){
+        String key = Base58.encode(verkey);
+        if(!crypto.getType().equals(CryptoType.DEFAULT_CRYPTO_TYPE)){
+            key = String.format("%s:%s", key, crypto.getType().getName());
+        }
+        return new Keys(key, signkey == null ? null : Base58.encode(signkey));
+    }
+    
+    @Override
+    public String toString(){
+        return String.format("KeyHandle: {%s, type: %s}", Base58.encode(verkey), crypto.getType().getName());
+    }
+}
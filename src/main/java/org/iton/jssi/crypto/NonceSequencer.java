@@ -0,0 +1,195 @@
+/*
+ *
+ *  The MIT License
+ *
+ *  Copyright 2019 ITON Solutions.
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+
+package org.iton.jssi.crypto;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import org.iton.jssi.crypto.util.RandomPool;
+import org.libsodium.jni.SodiumException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Hands out unique 24 byte nonces per key (XSalsa20 / XChaCha20 sized) without locks and
+ * without a call to the random number generator per message. Every key gets a random 16
+ * byte prefix once and an atomic counter; a nonce is the prefix followed by the big endian
+ * counter in the last 8 bytes, so nonces of one key never repeat. Shorter nonces are not
+ * supported: a prefix shorter than 16 bytes would collide between restarts or instances
+ * far too early, those nonces should be random.
+ *
+ * With a state file the prefixes and counters are written on {@link #close()} and resumed
+ * on the next start. The file is deleted as soon as it is loaded: after a crash there is
+ * no state to resume from and every key gets a fresh random prefix instead of counting
+ * again from a stale high-water mark. Nonces requested after closing are fully random, so
+ * they cannot repeat the counters written to the state file.
+ *
+ * @author ITON Solutions
+ */
+public class NonceSequencer implements AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(NonceSequencer.class);
+
+    public static final int COUNTER_BYTES = 8;
+    public static final int PREFIX_BYTES = 16;
+
+    private static final int MAGIC = 0x4E4F4E43;
+    private static final int VERSION = 1;
+
+    private final Map<String, Sequence> sequences = new ConcurrentHashMap<>();
+    private final Path file;
+    private volatile boolean closed;
+
+    public NonceSequencer() {
+        this.file = null;
+    }
+
+    public NonceSequencer(Path file) throws IOException {
+        this.file = file;
+        if(Files.exists(file)){
+            load(file);
+            Files.delete(file);
+        }
+    }
+
+    /*
+     * Returns the next nonce of the key, the length must be 24.
+     */
+    public byte[] next(String id, int length) {
+        byte[] nonce = new byte[length];
+        next(id, nonce);
+        return nonce;
+    }
+
+    public void next(String id, byte[] nonce) {
+        if(nonce.length != PREFIX_BYTES + COUNTER_BYTES){
+            throw new IllegalArgumentException(String.format("Unsupported nonce length: %d", nonce.length));
+        }
+        if(closed){
+            random(nonce);
+            return;
+        }
+
+        Sequence sequence = sequences.get(id);
+        if(sequence == null){
+            sequence = sequences.computeIfAbsent(id, key -> new Sequence(random(new byte[PREFIX_BYTES]), 0));
+        }
+
+        long counter = sequence.counter.getAndIncrement();
+        // close() sets the flag before reading the counters: a counter taken after they were
+        // written out sees the flag here
+        if(closed){
+            random(nonce);
+            return;
+        }
+
+        System.arraycopy(sequence.prefix, 0, nonce, 0, PREFIX_BYTES);
+        for(int i = nonce.length - 1; i >= PREFIX_BYTES; i--){
+            nonce[i] = (byte) counter;
+            counter >>>= 8;
+        }
+    }
+
+    /*
+     * Number of nonces handed out for the key since its prefix was generated.
+     */
+    public long getCount(String id) {
+        Sequence sequence = sequences.get(id);
+        return sequence == null ? 0 : sequence.counter.get();
+    }
+
+    /*
+     * Writes the high-water marks to the state file, if any. Nonces handed out afterwards
+     * are random.
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        if(file == null){
+            return;
+        }
+
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (OutputStream stream = Files.newOutputStream(temp);
+                DataOutputStream out = new DataOutputStream(stream)) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(sequences.size());
+            for(Map.Entry<String, Sequence> entry : sequences.entrySet()){
+                out.writeUTF(entry.getKey());
+                out.write(entry.getValue().prefix);
+                out.writeLong(entry.getValue().counter.get());
+            }
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        LOG.debug("Saved nonce sequences of {} keys to {}", sequences.size(), file);
+    }
+
+    private void load(Path file) throws IOException {
+        try (InputStream stream = Files.newInputStream(file);
+                DataInputStream in = new DataInputStream(stream)) {
+            if(in.readInt() != MAGIC || in.readInt() != VERSION){
+                throw new IOException(String.format("Invalid nonce state file %s", file));
+            }
+            int count = in.readInt();
+            for(int i = 0; i < count; i++){
+                String id = in.readUTF();
+                byte[] prefix = new byte[PREFIX_BYTES];
+                in.readFully(prefix);
+                sequences.put(id, new Sequence(prefix, in.readLong()));
+            }
+        }
+        LOG.debug("Loaded nonce sequences of {} keys from {}", sequences.size(), file);
+    }
+
+    private static byte[] random(byte[] bytes) {
+        try {
+            RandomPool.nextBytes(bytes);
+        } catch(SodiumException e){
+            throw new IllegalStateException("Cannot generate nonce", e);
+        }
+        return bytes;
+    }
+
+    private static class Sequence {
+
+        final byte[] prefix;
+        final AtomicLong counter;
+
+        Sequence(byte[] prefix, long counter) {
+            this.prefix = prefix;
+            this.counter = new AtomicLong(counter);
+        }
+    }
+}
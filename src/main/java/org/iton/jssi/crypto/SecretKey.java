@@ -0,0 +1,119 @@
+/*
+ *
+ *  The MIT License
+ *
+ *  Copyright 2019 ITON Solutions.
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+
+package org.iton.jssi.crypto;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import org.iton.jssi.crypto.util.Base58;
+
+/**
+ * Secret key held outside the Java heap, the counterpart of the Base58 signkey of
+ * {@link Keys}. The key bytes live in a direct buffer, are decoded only once and are
+ * overwritten with zeros by {@link #close()}; the GC never moves or copies them. Operations
+ * of {@link CryptoService} and {@link org.iton.jssi.crypto.algorithm.ICrypto} taking a
+ * SecretKey copy the key into a short lived array for the native call and erase it again.
+ *
+ * A key that is not closed is released with its buffer by the GC, without being erased.
+ *
+ * @author ITON Solutions
+ */
+public final class SecretKey implements AutoCloseable {
+
+    // verkey of the key pair, with an optional ":type" suffix
+    public final String verkey;
+    private final ByteBuffer key;
+    private boolean closed;
+
+    /*
+     * Copies the signkey off heap, the caller should erase its array.
+     */
+    public SecretKey(String verkey, byte[] signkey) {
+        this(verkey, signkey, signkey.length);
+    }
+
+    private SecretKey(String verkey, byte[] signkey, int length) {
+        this.verkey = verkey;
+        this.key = ByteBuffer.allocateDirect(length);
+        this.key.put(signkey, 0, length);
+    }
+
+    /*
+     * Decodes the Base58 signkey of the keys off heap.
+     */
+    public static SecretKey from(Keys keys) throws CryptoException {
+        if(keys.signkey == null){
+            throw new CryptoException(String.format("Signkey required but not present for %s", keys.verkey));
+        }
+        byte[] signkey = new byte[keys.signkey.length()];
+        try {
+            int length = Base58.decode(keys.signkey, signkey, 0);
+            return new SecretKey(keys.verkey, signkey, length);
+        } finally {
+            Arrays.fill(signkey, (byte) 0);
+        }
+    }
+
+    public int length() {
+        return key.capacity();
+    }
+
+    /*
+     * Copies the key into a new array, which the caller must erase after use.
+     */
+    public synchronized byte[] toArray() {
+        if(closed){
+            throw new IllegalStateException(String.format("Secret key of %s is closed", verkey));
+        }
+        byte[] result = new byte[key.capacity()];
+        ByteBuffer view = key.duplicate();
+        view.clear();
+        view.get(result);
+        return result;
+    }
+
+    public synchronized boolean isClosed() {
+        return closed;
+    }
+
+    /*
+     * Erases the key. Further use throws IllegalStateException.
+     */
+    @Override
+    public synchronized void close() {
+        if(closed){
+            return;
+        }
+        for(int i = 0; i < key.capacity(); i++){
+            key.put(i, (byte) 0);
+        }
+        closed = true;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("SecretKey: {%s}", verkey);
+    }
+}
@@ -25,24 +25,88 @@
 
 package org.iton.jssi.crypto.algorithm;
 
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
 import org.iton.jssi.crypto.algorithm.ICrypto.CryptoType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
+ * Registry of the crypto engines. Engines are shared, stateless from the caller's point
+ * of view and safe for concurrent use, so they may keep warmed up per-instance state such
+ * as caches. {@link Ed25519} is registered by default; further {@link ICrypto}
+ * implementations are discovered with {@link ServiceLoader} (listed in
+ * {@code META-INF/services/org.iton.jssi.crypto.algorithm.ICrypto}) or registered at startup
+ * with {@link #register(ICrypto)}. An engine replaces any engine previously registered for
+ * the same crypto type.
  *
  * @author ITON Solutions
  */
 public class CryptoFactory {
+    
+    private static final Logger LOG = LoggerFactory.getLogger(CryptoFactory.class);
+    
+    // copied on write, lookups read the current maps without locking
+    private static volatile Map<CryptoType, ICrypto> engines = new EnumMap<>(CryptoType.class);
+    private static volatile Map<String, ICrypto> names = new HashMap<>();
+    
+    static {
+        register(new Ed25519());
+        
+        Iterator<ICrypto> providers = ServiceLoader.load(ICrypto.class).iterator();
+        while(true){
+            try {
+                if(!providers.hasNext()){
+                    break;
+                }
+                ICrypto crypto = providers.next();
+                LOG.info(String.format("Register crypto %s: %s", crypto.getType().getName(), crypto.getClass().getName()));
+                register(crypto);
+            } catch(ServiceConfigurationError e){
+                LOG.error(String.format("Unable to load crypto provider: %s", e.getMessage()));
+            }
+        }
+    }
+    
+    public static synchronized void register(ICrypto crypto){
+        Map<CryptoType, ICrypto> types = new EnumMap<>(engines);
+        types.put(crypto.getType(), crypto);
+        
+        Map<String, ICrypto> named = new HashMap<>();
+        for(Map.Entry<CryptoType, ICrypto> entry : types.entrySet()){
+            named.put(entry.getKey().getName(), entry.getValue());
+        }
+        engines = types;
+        names = named;
+    }
+    
+    public static ICrypto getCrypto(CryptoType type){
+        return engines.get(type);
+    }
 
+    /*
+     * Returns the engine registered for the crypto type name (case insensitive)
+     * or null if there is none.
+     */
     public static ICrypto getCrypto(String type){
+        if(type == null){
+            return null;
+        }
         
-        switch(CryptoType.toType(type)){
-            default:{
-                return new Ed25519();
-            }
+        Map<String, ICrypto> named = names;
+        ICrypto crypto = named.get(type);
+        if(crypto == null){
+            crypto = named.get(type.toLowerCase(Locale.ROOT));
         }
+        return crypto;
     }
    
     public static ICrypto getCrypto() {
-        return new Ed25519();
+        return engines.get(CryptoType.DEFAULT_CRYPTO_TYPE);
     }
 }
@@ -25,16 +25,24 @@
 
 package org.iton.jssi.crypto.algorithm;
 
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
 import java.util.Map;
-import org.bitcoinj.core.Base58;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import org.iton.jssi.crypto.util.Base58;
 import org.iton.jssi.crypto.CryptoException;
 import org.iton.jssi.crypto.Keys;
+import org.iton.jssi.crypto.util.BoundedCache;
+import org.iton.jssi.crypto.util.RandomPool;
 import org.libsodium.api.Crypto_box;
-import org.libsodium.api.Crypto_randombytes;
 import org.libsodium.api.Crypto_sign_ed25519;
 import org.libsodium.jni.SodiumConstants;
 import static org.libsodium.jni.SodiumConstants.CRYPTO_BOX_CURVE25519XCHACHA20POLY1305_NONCEBYTES;
 import static org.libsodium.jni.SodiumConstants.CRYPTO_SIGN_ED25519_SECRETKEYBYTES;
+import static org.libsodium.jni.SodiumConstants.CRYPTO_SIGN_ED25519_SEEDBYTES;
 import org.libsodium.jni.SodiumException;
 
 /**
@@ -42,24 +50,57 @@ import org.libsodium.jni.SodiumException;
  * @author ITON Solutions
  */
 public class Ed25519 implements ICrypto{
+    
+    // below this number of signatures a batch is verified on the calling thread
+    private static final int VERIFY_THRESHOLD = 64;
+    
+    // Curve25519 conversions of the Ed25519 keys of known peers, keyed by the Ed25519 key
+    private final BoundedCache<ByteBuffer, byte[]> curvePks = new BoundedCache<>(4096);
+    
+    private volatile KeyPairPool keyPairPool;
+    
+    public KeyPairPool getKeyPairPool(){
+        return keyPairPool;
+    }
+    
+    /*
+     * Random keys (createKeys with a null seed) are taken from the pool if one is set.
+     * The pool is not closed by this class.
+     */
+    public void setKeyPairPool(KeyPairPool keyPairPool){
+        this.keyPairPool = keyPairPool;
+    }
 
     @Override
     public Keys createKeys(byte[] seed) throws SodiumException {
-;
-        Map<String, byte[]> result;
-        
-        if(seed == null){
-            result = Crypto_sign_ed25519.keypair();
-        } else { 
-            result = Crypto_sign_ed25519.seed_keypair(seed);
-        }
+        Map<String, byte[]> result = createKeyPair(seed);
         byte[] pk = result.get("pk");
         byte[] sk = result.get("sk");
         
         Keys keys = new Keys(Base58.encode(pk), Base58.encode(sk));
+        Arrays.fill(sk, (byte) 0);
         return keys;
     }
     
+    @Override
+    public Map<String, byte[]> createKeyPair(byte[] seed) throws SodiumException {
+        KeyPairPool pool = keyPairPool;
+        
+        if(seed == null && pool != null){
+            byte[] sk = pool.take();
+            Map<String, byte[]> result = new HashMap<>();
+            result.put("pk", Arrays.copyOfRange(sk, CRYPTO_SIGN_ED25519_SEEDBYTES, sk.length));
+            result.put("sk", sk);
+            return result;
+        } else if(seed == null){
+            byte[] random = RandomPool.nextBytes(CRYPTO_SIGN_ED25519_SEEDBYTES);
+            Map<String, byte[]> result = Crypto_sign_ed25519.seed_keypair(random);
+            Arrays.fill(random, (byte) 0);
+            return result;
+        }
+        return Crypto_sign_ed25519.seed_keypair(seed);
+    }
+    
     @Override
     public byte[] sign(byte[] data, byte[] sk) throws SodiumException, CryptoException{
         if(sk.length != CRYPTO_SIGN_ED25519_SECRETKEYBYTES){
@@ -75,11 +116,79 @@ public class Ed25519 implements ICrypto{
         return result;
     }
     
+    /*
+     * Verifies every (data, signature, pk) triple and returns a bitmap with the
+     * indexes of the valid ones set. A failing or malformed item only clears its
+     * own bit, it never aborts the batch. Large batches are split across the
+     * common fork-join pool.
+     */
+    @Override
+    public BitSet verifyAll(byte[][] data, byte[][] signatures, byte[][] pks) {
+        boolean[] verified = new boolean[data.length];
+        
+        if(data.length < VERIFY_THRESHOLD){
+            verifyRange(data, signatures, pks, verified, 0, data.length);
+        } else {
+            ForkJoinPool.commonPool().invoke(new VerifyTask(data, signatures, pks, verified, 0, data.length));
+        }
+        
+        BitSet result = new BitSet(data.length);
+        for(int i = 0; i < verified.length; i++){
+            if(verified[i]){
+                result.set(i);
+            }
+        }
+        return result;
+    }
+    
+    private static void verifyRange(byte[][] data, byte[][] signatures, byte[][] pks, boolean[] verified, int from, int to){
+        for(int i = from; i < to; i++){
+            if(data[i] == null || signatures[i] == null || pks[i] == null){
+                continue;
+            }
+            try {
+                verified[i] = Crypto_sign_ed25519.verify(data[i], signatures[i], pks[i]);
+            } catch(SodiumException e){
+                verified[i] = false;
+            }
+        }
+    }
+    
+    private static class VerifyTask extends RecursiveAction {
+        
+        private static final long serialVersionUID = 1L;
+
+        private final byte[][] data;
+        private final byte[][] signatures;
+        private final byte[][] pks;
+        private final boolean[] verified;
+        private final int from;
+        private final int to;
+        
+        VerifyTask(byte[][] data, byte[][] signatures, byte[][] pks, boolean[] verified, int from, int to){
+            this.data = data;
+            this.signatures = signatures;
+            this.pks = pks;
+            this.verified = verified;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if(to - from <= VERIFY_THRESHOLD){
+                verifyRange(data, signatures, pks, verified, from, to);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new VerifyTask(data, signatures, pks, verified, from, middle),
+                    new VerifyTask(data, signatures, pks, verified, middle, to));
+        }
+    }
+    
     @Override
     public byte[] genNonce() throws SodiumException {
-        byte[] nonce = new byte[CRYPTO_BOX_CURVE25519XCHACHA20POLY1305_NONCEBYTES];
-        Crypto_randombytes.randombytes(nonce);
-        return nonce;
+        return RandomPool.nextBytes(CRYPTO_BOX_CURVE25519XCHACHA20POLY1305_NONCEBYTES);
     }
     
     /*
@@ -89,10 +198,12 @@ public class Ed25519 implements ICrypto{
     @Override
     public byte[] cryptoBox(byte[] data, byte[] nonce, byte[] verkey, byte[] signkey) throws SodiumException {
 
-        byte[] sk = Crypto_sign_ed25519.sk_to_curve25519(signkey);
-        byte[] pk = Crypto_sign_ed25519.pk_to_curve25519(verkey);
-        byte[] cipher = Crypto_box.easy(data, nonce, pk, sk);
-        return cipher;
+        byte[] sk = toCurveSk(signkey);
+        try {
+            return Crypto_box.easy(data, nonce, toCurvePk(verkey), sk);
+        } finally {
+            Arrays.fill(sk, (byte) 0);
+        }
     }
     
     /*
@@ -103,17 +214,19 @@ public class Ed25519 implements ICrypto{
     @Override
     public byte[] cryptoBoxOpen(byte[] cipher, byte[] nonce, byte[] verkey, byte[] signkey) throws SodiumException {
         
-        byte[] sk = Crypto_sign_ed25519.sk_to_curve25519(signkey);
-        byte[] pk = Crypto_sign_ed25519.pk_to_curve25519(verkey);
-        byte[] data = Crypto_box.open_easy(cipher, nonce, pk, sk);
-        return data;
+        byte[] sk = toCurveSk(signkey);
+        try {
+            return Crypto_box.open_easy(cipher, nonce, toCurvePk(verkey), sk);
+        } finally {
+            Arrays.fill(sk, (byte) 0);
+        }
     }
     
     
     @Override
     public byte[] cryptoBoxSeal(byte[] data, byte[] verkey) throws SodiumException {
         
-        byte[] pk = Crypto_sign_ed25519.pk_to_curve25519(verkey);
+        byte[] pk = toCurvePk(verkey);
         byte[] cipher = Crypto_box.seal(data, pk);
         return cipher;
     }
@@ -121,10 +234,33 @@ public class Ed25519 implements ICrypto{
     @Override
     public byte[] cryptoBoxSealOpen(byte[] cipher, byte[] verkey, byte[] signkey) throws SodiumException {
         
-        byte[] pk = Crypto_sign_ed25519.pk_to_curve25519(verkey);
-        byte[] sk = Crypto_sign_ed25519.sk_to_curve25519(signkey);
-        byte[] data = Crypto_box.seal_open(cipher, pk, sk);
-        return data;
+        byte[] sk = toCurveSk(signkey);
+        try {
+            return Crypto_box.seal_open(cipher, toCurvePk(verkey), sk);
+        } finally {
+            Arrays.fill(sk, (byte) 0);
+        }
+    }
+
+    /*
+     * The Ed25519 to Curve25519 conversions of public keys are cached per key, so boxing
+     * between known peers skips them. Cached keys are copied, callers may reuse their arrays.
+     */
+    private byte[] toCurvePk(byte[] verkey) throws SodiumException {
+        byte[] pk = curvePks.get(ByteBuffer.wrap(verkey));
+        if(pk == null){
+            pk = Crypto_sign_ed25519.pk_to_curve25519(verkey);
+            curvePks.put(ByteBuffer.wrap(verkey.clone()), pk);
+        }
+        return pk;
+    }
+    
+    /*
+     * Secret keys are converted on every use and never cached, a cache would keep heap
+     * copies of them; the conversion is a single hash. The caller erases the result.
+     */
+    private static byte[] toCurveSk(byte[] signkey) throws SodiumException {
+        return Crypto_sign_ed25519.sk_to_curve25519(signkey);
     }
 
     @Override
@@ -25,8 +25,16 @@
 
 package org.iton.jssi.crypto.algorithm;
 
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
 import org.iton.jssi.crypto.CryptoException;
 import org.iton.jssi.crypto.Keys;
+import org.iton.jssi.crypto.SecretKey;
+import org.iton.jssi.crypto.util.Base58;
+import org.iton.jssi.crypto.util.Buffers;
 import org.libsodium.jni.SodiumException;
 
 /**
@@ -58,14 +66,116 @@ public interface ICrypto {
     }
     
     public Keys createKeys(byte[] seed) throws SodiumException;
+    /*
+     * Raw form of createKeys: the "pk" and "sk" entries hold the key bytes, a random
+     * keypair is created for a null seed. The caller owns (and should erase) the sk. The
+     * default decodes the keys returned by createKeys.
+     */
+    public default Map<String, byte[]> createKeyPair(byte[] seed) throws SodiumException {
+        Keys keys = createKeys(seed);
+        Map<String, byte[]> result = new HashMap<>();
+        result.put("pk", Base58.decode(keys.verkey.split(":")[0]));
+        result.put("sk", Base58.decode(keys.signkey));
+        return result;
+    }
     public byte[] sign(byte[] data, byte[] sk) throws SodiumException, CryptoException;
     public boolean verify(byte[] data, byte[] signature, byte[] pk) throws SodiumException;
+    /*
+     * Verifies the signatures of a batch, bit i is set if signature i is valid. Entries
+     * with a null element do not verify. The default checks them one by one.
+     */
+    public default BitSet verifyAll(byte[][] data, byte[][] signatures, byte[][] pks) {
+        BitSet result = new BitSet(data.length);
+        for(int i = 0; i < data.length; i++){
+            if(data[i] == null || signatures[i] == null || pks[i] == null){
+                continue;
+            }
+            try {
+                if(verify(data[i], signatures[i], pks[i])){
+                    result.set(i);
+                }
+            } catch(SodiumException e){
+                // an invalid signature or key does not verify
+            }
+        }
+        return result;
+    }
     public byte[] cryptoBox(byte[] data, byte[] nonce, byte[] pk, byte[] sk) throws SodiumException;
     public byte[] cryptoBoxOpen(byte[] cipher, byte[] nonce, byte[] pk, byte[] sk) throws SodiumException;
     public byte[] cryptoBoxSeal(byte[] data, byte[] pk) throws SodiumException;
     public byte[] cryptoBoxSealOpen(byte[] cipher, byte[] verkey, byte[] sk) throws SodiumException;
     public byte[] genNonce() throws SodiumException;
     
+    /*
+     * ByteBuffer variants: inputs are read from position to limit and left untouched,
+     * the result is written at the position of out, which is advanced. They return the
+     * number of bytes written. The defaults go through the array variants: heap buffers
+     * wrapping a whole array are passed through, other buffers are copied.
+     */
+    public default int sign(ByteBuffer data, ByteBuffer sk, ByteBuffer out) throws SodiumException, CryptoException {
+        return Buffers.put(out, sign(Buffers.toArray(data), Buffers.toArray(sk)));
+    }
+    
+    public default boolean verify(ByteBuffer data, ByteBuffer signature, ByteBuffer pk) throws SodiumException {
+        return verify(Buffers.toArray(data), Buffers.toArray(signature), Buffers.toArray(pk));
+    }
+    
+    public default int cryptoBox(ByteBuffer data, ByteBuffer nonce, ByteBuffer pk, ByteBuffer sk, ByteBuffer out) throws SodiumException {
+        return Buffers.put(out, cryptoBox(Buffers.toArray(data), Buffers.toArray(nonce), Buffers.toArray(pk), Buffers.toArray(sk)));
+    }
+    
+    public default int cryptoBoxOpen(ByteBuffer cipher, ByteBuffer nonce, ByteBuffer pk, ByteBuffer sk, ByteBuffer out) throws SodiumException {
+        return Buffers.put(out, cryptoBoxOpen(Buffers.toArray(cipher), Buffers.toArray(nonce), Buffers.toArray(pk), Buffers.toArray(sk)));
+    }
+    
+    public default int cryptoBoxSeal(ByteBuffer data, ByteBuffer pk, ByteBuffer out) throws SodiumException {
+        return Buffers.put(out, cryptoBoxSeal(Buffers.toArray(data), Buffers.toArray(pk)));
+    }
+    
+    public default int cryptoBoxSealOpen(ByteBuffer cipher, ByteBuffer pk, ByteBuffer sk, ByteBuffer out) throws SodiumException {
+        return Buffers.put(out, cryptoBoxSealOpen(Buffers.toArray(cipher), Buffers.toArray(pk), Buffers.toArray(sk)));
+    }
+    
+    /*
+     * SecretKey variants: the key is copied for the call only and erased afterwards, its
+     * Curve25519 form is not cached. The defaults go through the array variants.
+     */
+    public default byte[] sign(byte[] data, SecretKey sk) throws SodiumException, CryptoException {
+        byte[] key = sk.toArray();
+        try {
+            return sign(data, key);
+        } finally {
+            Arrays.fill(key, (byte) 0);
+        }
+    }
+    
+    public default byte[] cryptoBox(byte[] data, byte[] nonce, byte[] pk, SecretKey sk) throws SodiumException {
+        byte[] key = sk.toArray();
+        try {
+            return cryptoBox(data, nonce, pk, key);
+        } finally {
+            Arrays.fill(key, (byte) 0);
+        }
+    }
+    
+    public default byte[] cryptoBoxOpen(byte[] cipher, byte[] nonce, byte[] pk, SecretKey sk) throws SodiumException {
+        byte[] key = sk.toArray();
+        try {
+            return cryptoBoxOpen(cipher, nonce, pk, key);
+        } finally {
+            Arrays.fill(key, (byte) 0);
+        }
+    }
+    
+    public default byte[] cryptoBoxSealOpen(byte[] cipher, byte[] pk, SecretKey sk) throws SodiumException {
+        byte[] key = sk.toArray();
+        try {
+            return cryptoBoxSealOpen(cipher, pk, key);
+        } finally {
+            Arrays.fill(key, (byte) 0);
+        }
+    }
+    
     public void validateKeys(String verkey);
     public CryptoType getType();
 }
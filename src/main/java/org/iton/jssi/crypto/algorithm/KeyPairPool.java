@@ -0,0 +1,185 @@
+/*
+ *
+ *  The MIT License
+ *
+ *  Copyright 2019 ITON Solutions.
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+
+package org.iton.jssi.crypto.algorithm;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+import org.iton.jssi.crypto.util.RandomPool;
+import org.libsodium.api.Crypto_sign_ed25519;
+import org.libsodium.jni.SodiumException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static org.libsodium.jni.SodiumConstants.CRYPTO_SIGN_ED25519_SEEDBYTES;
+
+/**
+ * Pool of random Ed25519 keypairs generated ahead of time, so creating a random key is a
+ * dequeue. A low priority daemon thread refills the pool up to the high watermark whenever
+ * it drops below the low watermark. Keypairs are kept as the 64-byte libsodium secret key
+ * (seed followed by the public key) and erased when they are handed out, dropped or the pool
+ * is closed. When the pool is empty a keypair is generated on the calling thread. A failed
+ * refill is retried after a growing delay and counted in {@link #getFailures()}.
+ *
+ * @author ITON Solutions
+ */
+public class KeyPairPool implements AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(KeyPairPool.class);
+
+    private static final long MIN_BACKOFF = 100;
+    private static final long MAX_BACKOFF = 30000;
+
+    private final BlockingQueue<byte[]> keys;
+    private final int low;
+    private final int high;
+    private final Object lock = new Object();
+    private final Thread filler;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private volatile boolean closed;
+
+    /*
+     * The pool is refilled once it holds fewer than low keypairs, low must be at least 1.
+     */
+    public KeyPairPool(int low, int high) {
+        if (low < 1 || high <= 0 || low > high) {
+            throw new IllegalArgumentException(String.format("Invalid watermarks %d/%d", low, high));
+        }
+        this.low = low;
+        this.high = high;
+        this.keys = new ArrayBlockingQueue<>(high);
+        this.filler = new Thread(this::fill, "jssi-keypair-pool");
+        filler.setDaemon(true);
+        filler.setPriority(Thread.MIN_PRIORITY);
+        filler.start();
+    }
+
+    /*
+     * Returns a 64-byte secret key, the caller owns (and should erase) the array.
+     */
+    public byte[] take() throws SodiumException {
+        byte[] sk = keys.poll();
+        if (keys.size() < low) {
+            synchronized (lock) {
+                lock.notify();
+            }
+        }
+        if (sk == null) {
+            misses.increment();
+            return generate();
+        }
+        hits.increment();
+        return sk;
+    }
+
+    public int size() {
+        return keys.size();
+    }
+
+    public int getLow() {
+        return low;
+    }
+
+    public int getHigh() {
+        return high;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /*
+     * Number of refills that failed to generate a keypair.
+     */
+    public long getFailures() {
+        return failures.sum();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        synchronized (lock) {
+            lock.notify();
+        }
+        filler.interrupt();
+        byte[] sk;
+        while ((sk = keys.poll()) != null) {
+            Arrays.fill(sk, (byte) 0);
+        }
+    }
+
+    private void fill() {
+        long backoff = MIN_BACKOFF;
+        while (!closed) {
+            try {
+                while (!closed && keys.size() < high) {
+                    byte[] sk = generate();
+                    if (closed || !keys.offer(sk)) {
+                        Arrays.fill(sk, (byte) 0);
+                    }
+                }
+                backoff = MIN_BACKOFF;
+                synchronized (lock) {
+                    while (!closed && keys.size() >= low) {
+                        lock.wait();
+                    }
+                }
+            } catch (InterruptedException e) {
+                // closed
+                break;
+            } catch (SodiumException | RuntimeException e) {
+                failures.increment();
+                LOG.warn("Keypair pool refill failed, retrying in {} ms", backoff, e);
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException interrupted) {
+                    break;
+                }
+                backoff = Math.min(backoff * 2, MAX_BACKOFF);
+            }
+        }
+        // a key may have been added while closing
+        byte[] sk;
+        while ((sk = keys.poll()) != null) {
+            Arrays.fill(sk, (byte) 0);
+        }
+    }
+
+    private static byte[] generate() throws SodiumException {
+        byte[] seed = RandomPool.nextBytes(CRYPTO_SIGN_ED25519_SEEDBYTES);
+        Map<String, byte[]> result = Crypto_sign_ed25519.seed_keypair(seed);
+        Arrays.fill(seed, (byte) 0);
+        return result.get("sk");
+    }
+}
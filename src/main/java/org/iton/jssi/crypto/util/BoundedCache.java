@@ -0,0 +1,227 @@
+/*
+ *
+ *  The MIT License
+ *
+ *  Copyright 2019 ITON Solutions.
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.iton.jssi.crypto.util;
+
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Size bounded concurrent cache. Lookups are lock free reads of a {@link ConcurrentHashMap};
+ * when the cache grows beyond its capacity entries are evicted with the CLOCK (second chance)
+ * policy, an approximation of LRU that does not need to reorder anything on a hit.
+ *
+ * @author ITON Solutions
+ */
+public class BoundedCache<K, V> {
+
+    private final int capacity;
+    private final ConcurrentHashMap<K, Entry<K, V>> map;
+    private final Queue<Entry<K, V>> clock = new ConcurrentLinkedQueue<>();
+    // removed entries still queued, purged once they exceed a fraction of the capacity
+    private final AtomicInteger stale = new AtomicInteger();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public BoundedCache(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException(String.format("Invalid cache capacity %d", capacity));
+        }
+        this.capacity = capacity;
+        this.map = new ConcurrentHashMap<>(Math.min(capacity, 1 << 16));
+    }
+
+    /**
+     * Returns the cached value for the key, or null if it is not cached.
+     *
+     * @param key the key
+     * @return the cached value or null
+     */
+    public V get(K key) {
+        Entry<K, V> entry = map.get(key);
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        entry.referenced = true;
+        hits.increment();
+        return entry.value;
+    }
+
+    /**
+     * Returns the cached value for the key, loading and caching it on a miss. The loader
+     * runs outside of any lock, so two threads missing the same key at once may both load
+     * it; exceptions thrown by the loader are propagated and nothing is cached.
+     *
+     * @param key the key
+     * @param loader computes the value of a missing key
+     * @return the cached or loaded value
+     */
+    public V get(K key, Function<? super K, ? extends V> loader) {
+        V value = get(key);
+        if (value == null) {
+            value = loader.apply(key);
+            if (value != null) {
+                put(key, value);
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Caches the value. A key already cached keeps its place in the clock and only gets the
+     * new value, so replacing values does not grow the queue.
+     *
+     * @param key the key
+     * @param value the value
+     */
+    public void put(K key, V value) {
+        Entry<K, V> entry = new Entry<>(key, value);
+        for (;;) {
+            Entry<K, V> previous = map.putIfAbsent(key, entry);
+            if (previous == null) {
+                clock.offer(entry);
+                break;
+            }
+            previous.value = value;
+            previous.referenced = true;
+            if (map.get(key) == previous) {
+                return;
+            }
+        }
+        while (map.size() > capacity && evict()) {
+        }
+    }
+
+    public V remove(K key) {
+        Entry<K, V> entry = map.remove(key);
+        if (entry == null) {
+            return null;
+        }
+        if (stale.incrementAndGet() > capacity / 4 + 16) {
+            purge();
+        }
+        return entry.value;
+    }
+
+    public void clear() {
+        map.clear();
+        clock.clear();
+        stale.set(0);
+    }
+
+    public int size() {
+        return map.size();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    public double getHitRate() {
+        long hit = hits.sum();
+        long total = hit + misses.sum();
+        return total == 0 ? 0.0 : (double) hit / total;
+    }
+
+    /*
+     * Advances the clock hand: entries referenced since the last sweep get a second chance
+     * and go back to the tail, the first unreferenced one is evicted. Entries of removed keys
+     * still in the queue are dropped on the way.
+     */
+    private boolean evict() {
+        Entry<K, V> entry;
+        while ((entry = clock.poll()) != null) {
+            if (map.get(entry.key) != entry) {
+                stale.decrementAndGet();
+                continue;
+            }
+            if (entry.referenced) {
+                entry.referenced = false;
+                clock.offer(entry);
+                continue;
+            }
+            if (map.remove(entry.key, entry)) {
+                evictions.increment();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /*
+     * Drops the queued entries of removed keys.
+     */
+    private void purge() {
+        int dropped = 0;
+        for (Iterator<Entry<K, V>> iterator = clock.iterator(); iterator.hasNext();) {
+            Entry<K, V> entry = iterator.next();
+            if (map.get(entry.key) != entry) {
+                iterator.remove();
+                dropped++;
+            }
+        }
+        stale.addAndGet(-dropped);
+    }
+
+    int queueSize() {
+        return clock.size();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("BoundedCache: {size %d/%d, hits %d, misses %d, evictions %d}",
+                size(), capacity, getHits(), getMisses(), getEvictions());
+    }
+
+    private static class Entry<K, V> {
+        final K key;
+        volatile V value;
+        volatile boolean referenced;
+
+        Entry(K key, V value) {
+            this.key = key;
+            this.value = value;
+        }
+    }
+}
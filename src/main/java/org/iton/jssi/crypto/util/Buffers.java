@@ -0,0 +1,113 @@
+/*
+ *
+ *  The MIT License
+ *
+ *  Copyright 2019 ITON Solutions.
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.iton.jssi.crypto.util;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+
+/**
+ * Helpers to move data between {@link ByteBuffer}s and the byte arrays taken by the native
+ * layer. Input buffers are read from their position to their limit and left untouched;
+ * output is written at the position of the destination buffer, which is advanced.
+ *
+ * @author ITON Solutions
+ */
+public class Buffers {
+
+    /**
+     * Returns the remaining bytes of the buffer. A heap buffer wrapping exactly its whole
+     * backing array returns that array, any other buffer is copied.
+     *
+     * @param buffer the input buffer, not modified
+     * @return the remaining bytes
+     */
+    public static byte[] toArray(ByteBuffer buffer) {
+        int length = buffer.remaining();
+        if (buffer.hasArray() && buffer.arrayOffset() == 0 && buffer.position() == 0 && buffer.array().length == length) {
+            return buffer.array();
+        }
+        byte[] bytes = new byte[length];
+        buffer.duplicate().get(bytes);
+        return bytes;
+    }
+
+    /**
+     * Writes the bytes at the position of the destination buffer.
+     *
+     * @param dst the destination buffer
+     * @param bytes the bytes to write
+     * @return the number of bytes written
+     * @throws BufferOverflowException if the destination buffer has not enough room left,
+     *         in which case nothing is written
+     */
+    public static int put(ByteBuffer dst, byte[] bytes) {
+        if (dst.remaining() < bytes.length) {
+            throw new BufferOverflowException();
+        }
+        dst.put(bytes);
+        return bytes.length;
+    }
+
+    /**
+     * Releases the mapping of a buffer right away instead of when it is garbage collected,
+     * so that its file can be replaced or deleted, which Windows refuses while the file is
+     * mapped. The buffer and every view of it must not be used afterwards, any access would
+     * crash the JVM.
+     *
+     * @param buffer the mapped buffer, may be null
+     * @return false if this JVM offers no way to unmap a buffer
+     */
+    public static boolean unmap(MappedByteBuffer buffer) {
+        if (buffer == null) {
+            return true;
+        }
+        try {
+            // Java 9 and later
+            Class<?> type = Class.forName("sun.misc.Unsafe");
+            Method invokeCleaner;
+            try {
+                invokeCleaner = type.getMethod("invokeCleaner", ByteBuffer.class);
+            } catch (NoSuchMethodException e) {
+                // Java 8
+                Method cleaner = buffer.getClass().getMethod("cleaner");
+                cleaner.setAccessible(true);
+                Object instance = cleaner.invoke(buffer);
+                if (instance != null) {
+                    instance.getClass().getMethod("clean").invoke(instance);
+                }
+                return true;
+            }
+            Field field = type.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            invokeCleaner.invoke(field.get(null), buffer);
+            return true;
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ *
+ *  The MIT License
+ *
+ *  Copyright 2019 ITON Solutions.
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+
+package org.iton.jssi.crypto.util;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.libsodium.api.Crypto_randombytes;
+import org.libsodium.jni.SodiumException;
+
+/**
+ * Per-thread buffers of random bytes from the native generator, refilled in blocks so small
+ * requests such as nonces and seeds do not cost a native call each. Bytes are erased from the
+ * buffer as they are handed out, and requests larger than a quarter of a block go to the
+ * native generator directly.
+ *
+ * A JVM process is not forked, but it may be restored from a snapshot or clone; call
+ * {@link #reseed()} afterwards so no thread hands out bytes buffered before the snapshot.
+ * The block size is read from the {@code jssi.crypto.random.block} system property,
+ * between 4 and 64 KB (16 KB by default).
+ *
+ * @author ITON Solutions
+ */
+public final class RandomPool {
+
+    public static final int MIN_BLOCK_SIZE = 0x1000;
+    public static final int MAX_BLOCK_SIZE = 0x10000;
+    public static final int BLOCK_SIZE = Math.max(MIN_BLOCK_SIZE,
+            Math.min(MAX_BLOCK_SIZE, Integer.getInteger("jssi.crypto.random.block", 0x4000)));
+
+    private static final AtomicInteger GENERATION = new AtomicInteger();
+    private static final ThreadLocal<Block> BLOCKS = ThreadLocal.withInitial(Block::new);
+
+    private RandomPool() {
+    }
+
+    public static byte[] nextBytes(int length) throws SodiumException {
+        byte[] bytes = new byte[length];
+        nextBytes(bytes, 0, length);
+        return bytes;
+    }
+
+    public static void nextBytes(byte[] bytes) throws SodiumException {
+        nextBytes(bytes, 0, bytes.length);
+    }
+
+    public static void nextBytes(byte[] bytes, int offset, int length) throws SodiumException {
+        if (offset < 0 || length < 0 || offset + length > bytes.length) {
+            throw new IndexOutOfBoundsException();
+        }
+        if (length > BLOCK_SIZE / 4) {
+            byte[] random = new byte[length];
+            Crypto_randombytes.randombytes(random);
+            System.arraycopy(random, 0, bytes, offset, length);
+            Arrays.fill(random, (byte) 0);
+            return;
+        }
+        BLOCKS.get().take(bytes, offset, length);
+    }
+
+    /*
+     * Discards the buffered bytes of every thread, each thread refills on its next request.
+     */
+    public static void reseed() {
+        GENERATION.incrementAndGet();
+    }
+
+    private static class Block {
+
+        final byte[] bytes = new byte[BLOCK_SIZE];
+        int position = BLOCK_SIZE;
+        int generation = GENERATION.get();
+
+        void take(byte[] out, int offset, int length) throws SodiumException {
+            int current = GENERATION.get();
+            if (generation != current) {
+                Arrays.fill(bytes, position, BLOCK_SIZE, (byte) 0);
+                position = BLOCK_SIZE;
+                generation = current;
+            }
+            if (BLOCK_SIZE - position < length) {
+                Crypto_randombytes.randombytes(bytes);
+                position = 0;
+            }
+            System.arraycopy(bytes, position, out, offset, length);
+            Arrays.fill(bytes, position, position + length, (byte) 0);
+            position += length;
+        }
+    }
+}
@@ -24,7 +24,9 @@
  */
 package org.iton.jssi.crypto.util;
 
-import org.bitcoinj.core.Base58;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 
 /**
  *
@@ -32,16 +34,72 @@ import org.bitcoinj.core.Base58;
  */
 public class Utils {
 
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    private static final byte[] HEX_VALUES = new byte[128];
+
+    static {
+        Arrays.fill(HEX_VALUES, (byte) -1);
+        for (int i = 0; i < 10; i++) {
+            HEX_VALUES['0' + i] = (byte) i;
+        }
+        for (int i = 0; i < 6; i++) {
+            HEX_VALUES['a' + i] = (byte) (10 + i);
+            HEX_VALUES['A' + i] = (byte) (10 + i);
+        }
+    }
+
     public static byte[] toBytes(String data) {
         byte[] result = new byte[data.length() / 2];
-
-        for (int i = 0; i < result.length; i++) {
-            int index = i * 2;
-            result[i] = Integer.valueOf(data.substring(index, index + 2), 0x10).byteValue();
+        if (parseHex(data, 0, result.length * 2, result, 0) < 0) {
+            throw new NumberFormatException(String.format("Invalid hex string: %s", data));
         }
         return result;
     }
 
+    /**
+     * Decodes the hex characters {@code data[start, end)} into the buffer. Malformed input
+     * (an odd number of characters or a non hex character) is reported by the return value,
+     * nothing is thrown and the buffer may have been partially written.
+     *
+     * @param data the hex characters, upper or lower case
+     * @param start the first character to decode
+     * @param end the end of the characters to decode
+     * @param out the buffer receiving the bytes
+     * @param offset the position of the first byte in the buffer
+     * @return the number of decoded bytes or -1 if the input is not valid hex
+     * @throws IndexOutOfBoundsException if the bytes do not fit in the buffer
+     */
+    public static int parseHex(CharSequence data, int start, int end, byte[] out, int offset) {
+        int length = end - start;
+        if ((length & 1) != 0) {
+            return -1;
+        }
+        if (offset < 0 || offset + length / 2 > out.length) {
+            throw new IndexOutOfBoundsException();
+        }
+        for (int i = start; i < end; i += 2) {
+            int high = hexValue(data.charAt(i));
+            int low = hexValue(data.charAt(i + 1));
+            if ((high | low) < 0) {
+                return -1;
+            }
+            out[offset++] = (byte) (high << 4 | low);
+        }
+        return length / 2;
+    }
+
+    public static boolean isHex(CharSequence data) {
+        if ((data.length() & 1) != 0) {
+            return false;
+        }
+        for (int i = 0; i < data.length(); i++) {
+            if (hexValue(data.charAt(i)) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     public static String buildFullVerkey(String dest, String verkey) {
 
         if (verkey == null) {
@@ -61,11 +119,11 @@ public class Utils {
         }
 
         if (key.startsWith("~")) {
-            byte[] result = Base58.decode(dest);
-            byte[] suffix = Base58.decode(key.substring(1));
-            
-            result = concat(result, suffix);
-            key = Base58.encode(result);
+            // both halves are decoded next to each other, no intermediate arrays
+            byte[] result = new byte[dest.length() + key.length()];
+            int length = Base58.decode(dest, result, 0);
+            length += Base58.decode(key.subSequence(1, key.length()), result, length);
+            key = Base58.encode(result, 0, length);
         }
 
         if (type != null) {
@@ -95,11 +153,69 @@ public class Utils {
         return result;
     }
 
+    /**
+     * Gathers the arrays into the buffer at its position, which is advanced past them. Nothing
+     * is written if the arrays do not fit in the remaining space.
+     *
+     * @param out the buffer to write to
+     * @param arrays zero or more {@code byte} arrays
+     * @return the buffer
+     * @throws BufferOverflowException if the buffer has not enough remaining space
+     */
+    public static ByteBuffer concat(ByteBuffer out, byte[]... arrays) {
+        int length = 0;
+        for (byte[] array : arrays) {
+            length += array.length;
+        }
+        if (out.remaining() < length) {
+            throw new BufferOverflowException();
+        }
+        for (byte[] array : arrays) {
+            out.put(array);
+        }
+        return out;
+    }
+
     public static String toHex(byte[] bytes) {
-        StringBuilder builder = new StringBuilder();
+        return toHex(bytes, 0, bytes.length);
+    }
+
+    public static String toHex(byte[] bytes, int offset, int length) {
+        char[] chars = new char[length * 2];
+        toHex(bytes, offset, length, chars, 0);
+        return new String(chars);
+    }
+
+    /**
+     * Writes the lower case hex encoding of {@code bytes[offset, offset + length)} into the
+     * character buffer.
+     *
+     * @param bytes the bytes to encode
+     * @param offset the first byte to encode
+     * @param length the number of bytes to encode
+     * @param out the buffer receiving the characters
+     * @param position the position of the first character in the buffer
+     * @return the number of characters written
+     */
+    public static int toHex(byte[] bytes, int offset, int length, char[] out, int position) {
+        if (offset < 0 || length < 0 || offset + length > bytes.length || position < 0 || position + length * 2 > out.length) {
+            throw new IndexOutOfBoundsException();
+        }
+        for (int i = offset; i < offset + length; i++) {
+            out[position++] = HEX[(bytes[i] >> 4) & 0x0F];
+            out[position++] = HEX[bytes[i] & 0x0F];
+        }
+        return length * 2;
+    }
+
+    public static StringBuilder appendHex(StringBuilder builder, byte[] bytes) {
         for (byte b : bytes) {
-            builder.append(String.format("%02x", b));
+            builder.append(HEX[(b >> 4) & 0x0F]).append(HEX[b & 0x0F]);
         }
-        return builder.toString();
+        return builder;
+    }
+
+    private static int hexValue(char c) {
+        return c < 128 ? HEX_VALUES[c] : -1;
     }
 }
@@ -0,0 +1,145 @@
+/*
+ *
+ *  The MIT License
+ *
+ *  Copyright 2019 ITON Solutions.
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+
+package org.iton.jssi.crypto.util;
+
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Validation of Base58 DIDs and verkeys by alphabet and decoded length, remembering the
+ * values recently found valid. Checking a value is {@link Base58#decodedLength}, which
+ * allocates nothing; a value found valid before is a cache lookup. Only positive results
+ * are cached, so invalid input cannot push valid values out of the cache.
+ *
+ * @author ITON Solutions
+ */
+public class Validator {
+
+    public static final int DEFAULT_CAPACITY = 8192;
+
+    public static final int DID_BYTES = 0x10;
+    public static final int LONG_DID_BYTES = 0x20;
+    public static final int VERKEY_BYTES = 0x20;
+
+    // 44 Base58 digits hold 32 bytes, anything longer cannot be a DID or a key
+    private static final int MAX_LENGTH = 45;
+
+    private static final Validator DEFAULT = new Validator(DEFAULT_CAPACITY);
+
+    private final BoundedCache<String, Boolean> dids;
+    private final BoundedCache<String, Boolean> verkeys;
+
+    public Validator(int capacity) {
+        this.dids = new BoundedCache<>(capacity);
+        this.verkeys = new BoundedCache<>(capacity);
+    }
+
+    /*
+     * Shared validator of the library.
+     */
+    public static Validator getDefault() {
+        return DEFAULT;
+    }
+
+    /*
+     * Unqualified DID, the Base58 encoding of 16 or 32 bytes.
+     */
+    public boolean isValidDid(String did) {
+        if (did == null) {
+            return false;
+        }
+        if (dids.get(did) != null) {
+            return true;
+        }
+        int length = decodedLength(did);
+        if (length != DID_BYTES && length != LONG_DID_BYTES) {
+            return false;
+        }
+        dids.put(did, Boolean.TRUE);
+        return true;
+    }
+
+    /*
+     * Verkey without crypto type: the Base58 encoding of 32 bytes, or of the last 16 bytes
+     * for an abbreviated verkey ("~" prefix).
+     */
+    public boolean isValidVerkey(String verkey) {
+        if (verkey == null) {
+            return false;
+        }
+        if (verkeys.get(verkey) != null) {
+            return true;
+        }
+        boolean abbreviated = verkey.startsWith("~");
+        int length = decodedLength(abbreviated ? verkey.substring(1) : verkey);
+        if (length != (abbreviated ? VERKEY_BYTES / 2 : VERKEY_BYTES)) {
+            return false;
+        }
+        verkeys.put(verkey, Boolean.TRUE);
+        return true;
+    }
+
+    /*
+     * Validates every DID, the bits of the valid ones are set.
+     */
+    public BitSet validateAll(List<String> dids) {
+        BitSet result = new BitSet(dids.size());
+        for (int i = 0; i < dids.size(); i++) {
+            if (isValidDid(dids.get(i))) {
+                result.set(i);
+            }
+        }
+        return result;
+    }
+
+    public BitSet validateAllVerkeys(List<String> verkeys) {
+        BitSet result = new BitSet(verkeys.size());
+        for (int i = 0; i < verkeys.size(); i++) {
+            if (isValidVerkey(verkeys.get(i))) {
+                result.set(i);
+            }
+        }
+        return result;
+    }
+
+    public BoundedCache<String, Boolean> getDidCache() {
+        return dids;
+    }
+
+    public BoundedCache<String, Boolean> getVerkeyCache() {
+        return verkeys;
+    }
+
+    /*
+     * Decoded length of a value, -1 if it is not Base58 or too long to be a DID or key.
+     */
+    public static int decodedLength(String value) {
+        if (value.length() > MAX_LENGTH) {
+            return -1;
+        }
+        return Base58.decodedLength(value);
+    }
+}
@@ -0,0 +1,313 @@
+/*
+ *
+ *  The MIT License
+ *
+ *  Copyright 2019 ITON Solutions.
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+
+package org.iton.jssi.did;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import java.io.IOException;
+import org.iton.jssi.crypto.Keys;
+import org.iton.jssi.util.Pair;
+
+/**
+ * {@link DidCodec} of every DID record class.
+ *
+ * @author ITON Solutions
+ */
+public final class DidCodecs {
+
+    private DidCodecs() {
+    }
+
+    public static final DidCodec<Did> DID = new DidCodec<Did>() {
+        @Override
+        public void write(JsonGenerator generator, Did value) throws IOException {
+            generator.writeStartObject();
+            writeString(generator, "did", value.did);
+            writeString(generator, "verkey", value.verkey);
+            generator.writeEndObject();
+        }
+
+        @Override
+        public Did read(JsonParser parser) throws IOException {
+            if (!startObject(parser)) {
+                return null;
+            }
+            Did value = new Did(null, null);
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.getCurrentName();
+                parser.nextToken();
+                switch (name) {
+                    case "did":
+                        value.did = readString(parser);
+                        break;
+                    case "verkey":
+                        value.verkey = readString(parser);
+                        break;
+                    default:
+                        parser.skipChildren();
+                }
+            }
+            return value;
+        }
+    };
+
+    public static final DidCodec<TheirDid> THEIR_DID = new DidCodec<TheirDid>() {
+        @Override
+        public void write(JsonGenerator generator, TheirDid value) throws IOException {
+            generator.writeStartObject();
+            writeString(generator, "did", value.did);
+            writeString(generator, "verkey", value.verkey);
+            generator.writeEndObject();
+        }
+
+        @Override
+        public TheirDid read(JsonParser parser) throws IOException {
+            if (!startObject(parser)) {
+                return null;
+            }
+            TheirDid value = new TheirDid(null, null);
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.getCurrentName();
+                parser.nextToken();
+                switch (name) {
+                    case "did":
+                        value.did = readString(parser);
+                        break;
+                    case "verkey":
+                        value.verkey = readString(parser);
+                        break;
+                    default:
+                        parser.skipChildren();
+                }
+            }
+            return value;
+        }
+    };
+
+    public static final DidCodec<MyDidInfo> MY_DID_INFO = new DidCodec<MyDidInfo>() {
+        @Override
+        public void write(JsonGenerator generator, MyDidInfo value) throws IOException {
+            generator.writeStartObject();
+            writeString(generator, "did", value.did);
+            writeString(generator, "seed", value.seed);
+            writeString(generator, "cryptoType", value.cryptoType);
+            generator.writeBooleanField("cid", value.cid);
+            generator.writeEndObject();
+        }
+
+        @Override
+        public MyDidInfo read(JsonParser parser) throws IOException {
+            if (!startObject(parser)) {
+                return null;
+            }
+            MyDidInfo value = new MyDidInfo(null, null);
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.getCurrentName();
+                parser.nextToken();
+                switch (name) {
+                    case "did":
+                        value.did = readString(parser);
+                        break;
+                    case "seed":
+                        value.seed = readString(parser);
+                        break;
+                    case "cryptoType":
+                        String type = readString(parser);
+                        value.cryptoType = type == null ? value.cryptoType : type;
+                        break;
+                    case "cid":
+                        value.cid = parser.getValueAsBoolean();
+                        break;
+                    default:
+                        parser.skipChildren();
+                }
+            }
+            return value;
+        }
+    };
+
+    public static final DidCodec<TheirDidInfo> THEIR_DID_INFO = new DidCodec<TheirDidInfo>() {
+        @Override
+        public void write(JsonGenerator generator, TheirDidInfo value) throws IOException {
+            generator.writeStartObject();
+            writeString(generator, "did", value.did);
+            writeString(generator, "verkey", value.verkey);
+            generator.writeEndObject();
+        }
+
+        @Override
+        public TheirDidInfo read(JsonParser parser) throws IOException {
+            if (!startObject(parser)) {
+                return null;
+            }
+            TheirDidInfo value = new TheirDidInfo(null, null);
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.getCurrentName();
+                parser.nextToken();
+                switch (name) {
+                    case "did":
+                        value.did = readString(parser);
+                        break;
+                    case "verkey":
+                        value.verkey = readString(parser);
+                        break;
+                    default:
+                        parser.skipChildren();
+                }
+            }
+            return value;
+        }
+    };
+
+    /*
+     * An own DID with its keys, as created by CryptoService.createMyDid, in a single record
+     * {"did":..,"verkey":..,"signkey":..}.
+     */
+    public static final DidCodec<Pair<Did, Keys>> MY_DID = new DidCodec<Pair<Did, Keys>>() {
+        @Override
+        public void write(JsonGenerator generator, Pair<Did, Keys> value) throws IOException {
+            generator.writeStartObject();
+            writeString(generator, "did", value.first.did);
+            writeString(generator, "verkey", value.first.verkey);
+            writeString(generator, "signkey", value.second.signkey);
+            generator.writeEndObject();
+        }
+
+        @Override
+        public Pair<Did, Keys> read(JsonParser parser) throws IOException {
+            if (!startObject(parser)) {
+                return null;
+            }
+            Did did = new Did(null, null);
+            Keys keys = new Keys(null, null);
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.getCurrentName();
+                parser.nextToken();
+                switch (name) {
+                    case "did":
+                        did.did = readString(parser);
+                        break;
+                    case "verkey":
+                        did.verkey = readString(parser);
+                        keys.verkey = did.verkey;
+                        break;
+                    case "signkey":
+                        keys.signkey = readString(parser);
+                        break;
+                    default:
+                        parser.skipChildren();
+                }
+            }
+            return new Pair<>(did, keys);
+        }
+    };
+
+    public static final DidCodec<Keys> KEYS = new DidCodec<Keys>() {
+        @Override
+        public void write(JsonGenerator generator, Keys value) throws IOException {
+            generator.writeStartObject();
+            writeString(generator, "verkey", value.verkey);
+            writeString(generator, "signkey", value.signkey);
+            generator.writeEndObject();
+        }
+
+        @Override
+        public Keys read(JsonParser parser) throws IOException {
+            if (!startObject(parser)) {
+                return null;
+            }
+            Keys value = new Keys(null, null);
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.getCurrentName();
+                parser.nextToken();
+                switch (name) {
+                    case "verkey":
+                        value.verkey = readString(parser);
+                        break;
+                    case "signkey":
+                        value.signkey = readString(parser);
+                        break;
+                    default:
+                        parser.skipChildren();
+                }
+            }
+            return value;
+        }
+    };
+
+    public static final DidCodec<DidMetadata> DID_METADATA = new DidCodec<DidMetadata>() {
+        @Override
+        public void write(JsonGenerator generator, DidMetadata value) throws IOException {
+            generator.writeStartObject();
+            writeString(generator, "metadata", value.metadata);
+            generator.writeEndObject();
+        }
+
+        @Override
+        public DidMetadata read(JsonParser parser) throws IOException {
+            if (!startObject(parser)) {
+                return null;
+            }
+            DidMetadata value = new DidMetadata(null);
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.getCurrentName();
+                parser.nextToken();
+                if (name.equals("metadata")) {
+                    value.metadata = readString(parser);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            return value;
+        }
+    };
+
+    /*
+     * Moves the parser to the start of the next record, false at the end of the input.
+     */
+    private static boolean startObject(JsonParser parser) throws IOException {
+        JsonToken token = parser.nextToken();
+        if (token == null) {
+            return false;
+        }
+        if (token != JsonToken.START_OBJECT) {
+            throw new JsonParseException(parser, String.format("Expected start of record, found %s", token));
+        }
+        return true;
+    }
+
+    private static void writeString(JsonGenerator generator, String name, String value) throws IOException {
+        if (value != null) {
+            generator.writeStringField(name, value);
+        }
+    }
+
+    private static String readString(JsonParser parser) throws IOException {
+        return parser.currentToken() == JsonToken.VALUE_NULL ? null : parser.getValueAsString();
+    }
+}
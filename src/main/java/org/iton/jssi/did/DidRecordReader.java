@@ -0,0 +1,184 @@
+/*
+ *
+ *  The MIT License
+ *
+ *  Copyright 2019 ITON Solutions.
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+
+package org.iton.jssi.did;
+
+import com.fasterxml.jackson.core.JsonParser;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+
+/**
+ * Reads DID records written by {@link DidRecordWriter} one at a time, with constant memory
+ * whatever the number of records. {@link #parallel} parses large NDJSON inputs on several
+ * cores: the input is cut into chunks of whole lines that are parsed on the common fork-join
+ * pool, a bounded number at a time, and the records are handed over in input order.
+ *
+ * @author ITON Solutions
+ */
+public class DidRecordReader<T> implements Iterator<T>, AutoCloseable {
+
+    public static final int DEFAULT_CHUNK_SIZE = 0x100000;
+
+    private final JsonParser parser;
+    private final DidCodec<T> codec;
+    private T next;
+
+    private DidRecordReader(JsonParser parser, DidCodec<T> codec) {
+        this.parser = parser;
+        this.codec = codec;
+    }
+
+    public static <T> DidRecordReader<T> ndjson(InputStream in, DidCodec<T> codec) throws IOException {
+        return new DidRecordReader<>(DidRecordWriter.JSON.createParser(in), codec);
+    }
+
+    public static <T> DidRecordReader<T> cbor(InputStream in, DidCodec<T> codec) throws IOException {
+        return new DidRecordReader<>(DidRecordWriter.CBOR.createParser(in), codec);
+    }
+
+    /*
+     * Throws UncheckedIOException for malformed input.
+     */
+    @Override
+    public boolean hasNext() {
+        if (next == null) {
+            try {
+                next = codec.read(parser);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return next != null;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        T result = next;
+        next = null;
+        return result;
+    }
+
+    @Override
+    public void close() throws IOException {
+        parser.close();
+    }
+
+    /*
+     * Parses NDJSON in chunks of about chunkSize bytes on the common pool and passes the
+     * records to the sink in input order. At most two chunks per core are held in memory.
+     * Returns the number of records read.
+     */
+    public static <T> long parallel(InputStream in, DidCodec<T> codec, int chunkSize, Consumer<T> sink) throws IOException {
+        int window = 2 * ForkJoinPool.getCommonPoolParallelism();
+        Deque<CompletableFuture<List<T>>> pending = new ArrayDeque<>();
+        long count = 0;
+
+        byte[] buffer = new byte[chunkSize];
+        int length = 0;
+        while (true) {
+            int n = in.read(buffer, length, buffer.length - length);
+            if (n > 0) {
+                length += n;
+                if (length < buffer.length) {
+                    continue;
+                }
+            }
+
+            // cut after the last complete line, the rest starts the next chunk
+            int end = length;
+            if (n >= 0) {
+                end = lastLine(buffer, length);
+                if (end < 0) {
+                    // a single line longer than the chunk
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                    continue;
+                }
+            }
+
+            byte[] chunk = Arrays.copyOf(buffer, end);
+            pending.add(CompletableFuture.supplyAsync(() -> parse(chunk, codec)));
+            System.arraycopy(buffer, end, buffer, 0, length - end);
+            length -= end;
+
+            while (pending.size() >= window || (n < 0 && !pending.isEmpty())) {
+                count += drain(pending.poll(), sink);
+            }
+            if (n < 0) {
+                return count;
+            }
+        }
+    }
+
+    private static int lastLine(byte[] buffer, int length) {
+        for (int i = length - 1; i >= 0; i--) {
+            if (buffer[i] == '\n') {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    private static <T> List<T> parse(byte[] chunk, DidCodec<T> codec) {
+        List<T> records = new ArrayList<>();
+        try (JsonParser parser = DidRecordWriter.JSON.createParser(chunk)) {
+            T record;
+            while ((record = codec.read(parser)) != null) {
+                records.add(record);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return records;
+    }
+
+    private static <T> int drain(CompletableFuture<List<T>> future, Consumer<T> sink) throws IOException {
+        List<T> records;
+        try {
+            records = future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) e.getCause()).getCause();
+            }
+            throw e;
+        }
+        records.forEach(sink);
+        return records.size();
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ *
+ *  The MIT License
+ *
+ *  Copyright 2019 ITON Solutions.
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+
+package org.iton.jssi.did;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.function.Consumer;
+
+/**
+ * Writes DID records one at a time as NDJSON (one JSON object per line) or as a CBOR
+ * sequence (CBOR maps one after the other). Nothing but the generator buffer is kept in
+ * memory. Closing the writer flushes it, the stream is left open. As a {@link Consumer} it
+ * can be the sink of a stream or of the DidProvisioner; write errors are then thrown as
+ * {@link UncheckedIOException}.
+ *
+ * @author ITON Solutions
+ */
+public class DidRecordWriter<T> implements Consumer<T>, AutoCloseable {
+
+    static final JsonFactory JSON = new JsonFactory();
+    static final CBORFactory CBOR = new CBORFactory();
+
+    static {
+        JSON.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        CBOR.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    }
+
+    private final JsonGenerator generator;
+    private final DidCodec<T> codec;
+    private final boolean lines;
+    private long count;
+
+    private DidRecordWriter(JsonGenerator generator, DidCodec<T> codec, boolean lines) {
+        this.generator = generator;
+        this.codec = codec;
+        this.lines = lines;
+    }
+
+    public static <T> DidRecordWriter<T> ndjson(OutputStream out, DidCodec<T> codec) throws IOException {
+        JsonGenerator generator = JSON.createGenerator(out, JsonEncoding.UTF8);
+        generator.setRootValueSeparator(null);
+        return new DidRecordWriter<>(generator, codec, true);
+    }
+
+    public static <T> DidRecordWriter<T> cbor(OutputStream out, DidCodec<T> codec) throws IOException {
+        return new DidRecordWriter<>(CBOR.createGenerator(out), codec, false);
+    }
+
+    public void write(T value) throws IOException {
+        codec.write(generator, value);
+        if (lines) {
+            generator.writeRaw('\n');
+        }
+        count++;
+    }
+
+    @Override
+    public void accept(T value) {
+        try {
+            write(value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public void flush() throws IOException {
+        generator.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        generator.close();
+    }
+}
@@ -25,31 +25,100 @@
 
 package org.iton.jssi.did;
 
-import org.bitcoinj.core.AddressFormatException;
-import org.bitcoinj.core.Base58;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import org.iton.jssi.crypto.util.Validator;
 import org.iton.jssi.util.Qualifiable;
 import org.iton.jssi.util.Validatable;
 import org.iton.jssi.util.ValidateException;
 
-public class DidValue extends Qualifiable<DidValue> implements Validatable {
+/**
+ * Immutable DID, qualified ({@code did:method:id}) or not. The entity is parsed once on
+ * creation, method and id are kept. DIDs are equal when their entities are; {@link #intern}
+ * returns a shared instance per entity as long as it is in use, so DIDs seen over and over
+ * are parsed and allocated once.
+ *
+ * @author ITON Solutions
+ */
+public final class DidValue extends Qualifiable<DidValue> implements Validatable {
 
     private final static String PREFIX = "did";
-    private String id;
-    private String method;
+
+    // weakly referenced interned DIDs, cleared entries are removed on the next intern
+    private static final ConcurrentHashMap<String, Interned> POOL = new ConcurrentHashMap<>();
+    private static final ReferenceQueue<DidValue> CLEARED = new ReferenceQueue<>();
+
+    private final String id;
+    private final String method;
 
     public DidValue(String entity){
-        this.entity = entity;
+        super(entity);
+        int end = methodEnd(entity);
+        if(end < 0){
+            this.method = null;
+            this.id = entity;
+        } else {
+            this.method = entity.substring(entity.indexOf(':') + 1, end);
+            this.id = entity.substring(end + 1);
+        }
     }
 
     public static DidValue create(String method, String entity){
         return new DidValue(qualify(PREFIX, method, entity));
     }
 
+    public static DidValue intern(String entity){
+        Interned reference;
+        while((reference = (Interned) CLEARED.poll()) != null){
+            POOL.remove(reference.entity, reference);
+        }
+
+        reference = POOL.get(entity);
+        DidValue value = reference == null ? null : reference.get();
+        if(value != null){
+            return value;
+        }
+
+        value = new DidValue(entity);
+        Interned created = new Interned(value);
+        while(true){
+            reference = POOL.putIfAbsent(entity, created);
+            if(reference == null){
+                return value;
+            }
+            DidValue existing = reference.get();
+            if(existing != null){
+                return existing;
+            }
+            if(POOL.replace(entity, reference, created)){
+                return value;
+            }
+        }
+    }
+
     @Override
     public String getPrefix() {
         return PREFIX;
     }
 
+    @Override
+    public String getMethod() {
+        return method;
+    }
+
+    /*
+     * The entity without prefix and method.
+     */
+    public String getId() {
+        return id;
+    }
+
+    @Override
+    public boolean isFullyQualified() {
+        return method != null;
+    }
+
     public ShortDidValue toShort() {
         return new ShortDidValue(entity);
     }
@@ -59,7 +128,7 @@ public class DidValue extends Qualifiable<DidValue> implements Validatable {
     }
 
     public DidValue toUnqualified() {
-        return new DidValue(toUnqualified(entity));
+        return method == null ? this : new DidValue(id);
     }
 
     @Override
@@ -70,17 +139,17 @@ public class DidValue extends Qualifiable<DidValue> implements Validatable {
     @Override
     public void validate() throws ValidateException {
 
-        if(isFullyQualified(entity)){
+        if(method != null){
             return;
         } else {
-            try {
-                byte[] decoded = Base58.decode(entity);
-                if(decoded.length != 16 || decoded.length != 32){
-                    throw new ValidateException(String.format(("Trying to use DID with unexpected length: %d. The 16- or 32-byte number upon which a DID is based should be 22/23 or 44/45 bytes when encoded as base58."), decoded.length));
-                }
-            } catch(AddressFormatException e){
-                throw new ValidateException(e.getMessage());
+            if(Validator.getDefault().isValidDid(entity)){
+                return;
             }
+            int length = Validator.decodedLength(entity);
+            if(length < 0){
+                throw new ValidateException(String.format("Trying to use DID with invalid base58 characters: %s", entity));
+            }
+            throw new ValidateException(String.format(("Trying to use DID with unexpected length: %d. The 16- or 32-byte number upon which a DID is based should be 22/23 or 44/45 bytes when encoded as base58."), length));
 
         }
     }
@@ -91,4 +160,29 @@ public class DidValue extends Qualifiable<DidValue> implements Validatable {
         }
         return true;
     }
+
+    @Override
+    public boolean equals(Object other) {
+        return this == other || (other instanceof DidValue && entity.equals(((DidValue) other).entity));
+    }
+
+    @Override
+    public int hashCode() {
+        return entity.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return entity;
+    }
+
+    private static class Interned extends WeakReference<DidValue> {
+
+        final String entity;
+
+        Interned(DidValue value) {
+            super(value, CLEARED);
+            this.entity = value.entity;
+        }
+    }
 }
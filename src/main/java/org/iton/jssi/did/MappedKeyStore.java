@@ -0,0 +1,966 @@
+/*
+ *
+ *  The MIT License
+ *
+ *  Copyright 2019 ITON Solutions.
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+
+package org.iton.jssi.did;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+import org.iton.jssi.crypto.CryptoException;
+import org.iton.jssi.crypto.Keys;
+import org.iton.jssi.crypto.util.Base58;
+import org.iton.jssi.crypto.util.Buffers;
+import org.iton.jssi.crypto.util.Utils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Persistent store of DIDs and their keys in memory mapped files, so a wallet is available
+ * right after opening it instead of being read into the heap first.
+ *
+ * The data file is an append-only log of fixed size records holding the DID, the 32 byte
+ * verkey and, for own DIDs, the 64 byte signkey. An update appends a new record and marks
+ * the previous one deleted; {@link #compact()} rewrites the live records into a new file
+ * once the deleted ones outnumber them. A second file holds an open addressing hash index
+ * from the DID to its record, so a lookup touches one index slot and one record.
+ *
+ * The data file starts with two header slots protected by a checksum, written alternately
+ * by {@link #flush()}: a torn header write leaves the other one intact. Records appended
+ * after the last flush are recovered on opening as far as their checksums are valid. The
+ * index is derived from the records; it is marked dirty before the first change after a
+ * flush and rebuilt by scanning the records when it was not flushed, belongs to another
+ * generation of the data file or is missing.
+ *
+ * The signkeys are stored unencrypted. The files are created readable by their owner only
+ * where the file system supports POSIX permissions; elsewhere, and on backups, the data
+ * file has to be protected like any other key material.
+ *
+ * Lookups run in parallel, changes are serialized.
+ *
+ * @author ITON Solutions
+ */
+public class MappedKeyStore implements AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(MappedKeyStore.class);
+
+    public static final int DID_BYTES = 64;
+    public static final int VERKEY_BYTES = 32;
+    public static final int SIGNKEY_BYTES = 64;
+
+    private static final int MAGIC = 0x4A4B5354;
+    private static final int INDEX_MAGIC = 0x4A4B4958;
+    private static final int VERSION = 1;
+
+    // data file: two header slots of magic, version, sequence, epoch, count, live and checksum
+    private static final int SLOT_BYTES = 64;
+    private static final int SLOT_CRC = 40;
+    private static final int HEADER_BYTES = 2 * SLOT_BYTES;
+    private static final int SEGMENT_RECORDS = 0x10000;
+
+    // record: state, kind, DID length, checksum of the rest, DID, verkey and signkey
+    private static final int STATE = 0;
+    private static final int KIND = 1;
+    private static final int DID_LENGTH = 2;
+    private static final int CRC = 4;
+    private static final int DID = 8;
+    private static final int VERKEY = DID + DID_BYTES;
+    private static final int SIGNKEY = VERKEY + VERKEY_BYTES;
+    private static final int RECORD_BYTES = SIGNKEY + SIGNKEY_BYTES;
+
+    private static final byte EMPTY = 0;
+    private static final byte LIVE = 1;
+    private static final byte DELETED = 2;
+    private static final byte MY_DID = 1;
+    private static final byte THEIR_DID = 2;
+
+    // index file: header of magic, version, dirty, slots, epoch, count and used slots, then
+    // slots of hash and record + 1; 0 marks an empty slot, REMOVED a slot freed by a removal
+    private static final int INDEX_DIRTY = 8;
+    private static final int INDEX_SLOTS = 12;
+    private static final int INDEX_EPOCH = 16;
+    private static final int INDEX_COUNT = 24;
+    private static final int INDEX_USED = 32;
+    private static final int INDEX_HEADER_BYTES = 64;
+    private static final int INDEX_SLOT_BYTES = 8;
+    private static final int MIN_INDEX_SLOTS = 0x400;
+    private static final int REMOVED = -1;
+
+    private static final int COMPACT_MIN_DELETED = 0x400;
+
+    private final Path file;
+    private final Path indexFile;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final List<MappedByteBuffer> segments = new ArrayList<>();
+    private final byte[] buffer = new byte[RECORD_BYTES];
+    private final CRC32 crc = new CRC32();
+
+    private FileChannel channel;
+    private MappedByteBuffer header;
+    private FileChannel indexChannel;
+    private MappedByteBuffer index;
+    private int mask;
+    private int used;
+    private long epoch;
+    private long sequence;
+    private int count;
+    private int live;
+    private boolean dirty;
+    private boolean closed;
+
+    /*
+     * Opens the store in the file, creating it if it does not exist. The index is kept next
+     * to it with the extension .idx.
+     */
+    public MappedKeyStore(Path file) throws IOException {
+        this.file = file;
+        this.indexFile = file.resolveSibling(file.getFileName() + ".idx");
+
+        reopen();
+        LOG.debug("Opened key store {} with {} DIDs in {} records", file, live, count);
+    }
+
+    /*
+     * Stores an own DID with its keys, replacing a previous record of the DID. The signkey
+     * is optional.
+     */
+    public void put(Did did, Keys keys) throws CryptoException, IOException {
+        put(did.did, MY_DID, did.verkey, keys == null ? null : keys.signkey);
+    }
+
+    /*
+     * Stores the DID of a peer, replacing a previous record of the DID. An abbreviated
+     * verkey is stored expanded.
+     */
+    public void put(TheirDid did) throws CryptoException, IOException {
+        put(did.did, THEIR_DID, did.verkey, null);
+    }
+
+    /*
+     * Returns the own DID or null if it is not stored.
+     */
+    public Did getDid(String did) {
+        byte[] record = readPublic(did, MY_DID);
+        return record == null ? null : new Did(did, Base58.encode(record, VERKEY, VERKEY_BYTES));
+    }
+
+    /*
+     * Returns the DID of a peer or null if it is not stored.
+     */
+    public TheirDid getTheirDid(String did) {
+        byte[] record = readPublic(did, THEIR_DID);
+        return record == null ? null : new TheirDid(did, Base58.encode(record, VERKEY, VERKEY_BYTES));
+    }
+
+    /*
+     * Returns the keys of an own DID or of a peer, the latter without signkey. Returns null
+     * if the DID is not stored.
+     */
+    public Keys getKeys(String did) {
+        byte[] record = read(did, (byte) 0);
+        if (record == null) {
+            return null;
+        }
+        String verkey = Base58.encode(record, VERKEY, VERKEY_BYTES);
+        String signkey = hasSignkey(record) ? Base58.encode(record, SIGNKEY, SIGNKEY_BYTES) : null;
+        Arrays.fill(record, SIGNKEY, RECORD_BYTES, (byte) 0);
+        return new Keys(verkey, signkey);
+    }
+
+    /*
+     * Returns the raw verkey of the DID or null if it is not stored.
+     */
+    public byte[] getVerkey(String did) {
+        byte[] record = readPublic(did, (byte) 0);
+        return record == null ? null : Arrays.copyOfRange(record, VERKEY, VERKEY + VERKEY_BYTES);
+    }
+
+    public boolean contains(String did) {
+        return readPublic(did, (byte) 0) != null;
+    }
+
+    public boolean remove(String did) throws IOException {
+        byte[] key = key(did);
+        if (key == null) {
+            return false;
+        }
+
+        Lock write = lock.writeLock();
+        write.lock();
+        try {
+            ensureOpen();
+            int slot = find(key, hash(key));
+            if (slot < 0) {
+                return false;
+            }
+            markDirty();
+            int position = slotPosition(slot);
+            setState(index.getInt(position + 4) - 1, DELETED);
+            index.putInt(position + 4, REMOVED);
+            live--;
+            return true;
+        } finally {
+            write.unlock();
+        }
+    }
+
+    /*
+     * Number of stored DIDs.
+     */
+    public int size() {
+        Lock read = lock.readLock();
+        read.lock();
+        try {
+            return live;
+        } finally {
+            read.unlock();
+        }
+    }
+
+    /*
+     * Number of records in the data file, including the deleted ones.
+     */
+    public int getRecordCount() {
+        Lock read = lock.readLock();
+        read.lock();
+        try {
+            return count;
+        } finally {
+            read.unlock();
+        }
+    }
+
+    /*
+     * Writes the changes to disk and commits them in the headers. Compacts the data file
+     * when most of its records are deleted.
+     */
+    public void flush() throws IOException {
+        Lock write = lock.writeLock();
+        write.lock();
+        try {
+            ensureOpen();
+            commit();
+            int deleted = count - live;
+            if (deleted >= COMPACT_MIN_DELETED && deleted > live) {
+                compact0();
+            }
+        } finally {
+            write.unlock();
+        }
+    }
+
+    /*
+     * Rewrites the live records into a new data file and rebuilds the index. The new file
+     * replaces the old one atomically.
+     */
+    public void compact() throws IOException {
+        Lock write = lock.writeLock();
+        write.lock();
+        try {
+            ensureOpen();
+            compact0();
+        } finally {
+            write.unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        Lock write = lock.writeLock();
+        write.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            commit();
+            closed = true;
+            release();
+        } finally {
+            write.unlock();
+        }
+        LOG.debug("Closed key store {}", file);
+    }
+
+    private void put(String did, byte kind, String verkey, String signkey) throws CryptoException, IOException {
+        byte[] key = key(did);
+        if (key == null) {
+            throw new CryptoException(String.format("Invalid DID: %s", did));
+        }
+
+        byte[] record = new byte[RECORD_BYTES];
+        try {
+            record[KIND] = kind;
+            record[DID_LENGTH] = (byte) key.length;
+            System.arraycopy(key, 0, record, DID, key.length);
+            decode(verkey(did, verkey), record, VERKEY, VERKEY_BYTES, "verkey");
+            if (signkey != null) {
+                decode(signkey, record, SIGNKEY, SIGNKEY_BYTES, "signkey");
+            }
+
+            Lock write = lock.writeLock();
+            write.lock();
+            try {
+                ensureOpen();
+                markDirty();
+                if ((used + 1) * 4L > (mask + 1) * 3L) {
+                    try {
+                        resize(tableSize(live + 1));
+                    } catch (IOException | RuntimeException e) {
+                        abandon(e);
+                        throw e;
+                    }
+                }
+
+                int hash = hash(key);
+                int slot = find(key, hash);
+                int target = append(record);
+                if (slot >= 0) {
+                    setState(index.getInt(slotPosition(slot) + 4) - 1, DELETED);
+                } else {
+                    slot = -slot - 1;
+                    if (index.getInt(slotPosition(slot) + 4) == 0) {
+                        used++;
+                    }
+                    live++;
+                }
+                index.putInt(slotPosition(slot), hash);
+                index.putInt(slotPosition(slot) + 4, target + 1);
+            } finally {
+                write.unlock();
+            }
+        } finally {
+            Arrays.fill(record, (byte) 0);
+        }
+    }
+
+    /*
+     * Returns a copy of the live record of the DID or null, optionally of the given kind
+     * only.
+     */
+    private byte[] read(String did, byte kind) {
+        byte[] key = key(did);
+        if (key == null) {
+            return null;
+        }
+
+        Lock read = lock.readLock();
+        read.lock();
+        try {
+            ensureOpen();
+            int slot = find(key, hash(key));
+            if (slot < 0) {
+                return null;
+            }
+            byte[] record = new byte[RECORD_BYTES];
+            read(index.getInt(slotPosition(slot) + 4) - 1, record);
+            if (kind != 0 && record[KIND] != kind) {
+                Arrays.fill(record, (byte) 0);
+                return null;
+            }
+            return record;
+        } finally {
+            read.unlock();
+        }
+    }
+
+    /*
+     * Like {@link #read(String, byte)} with the signkey erased from the copy.
+     */
+    private byte[] readPublic(String did, byte kind) {
+        byte[] record = read(did, kind);
+        if (record != null) {
+            Arrays.fill(record, SIGNKEY, RECORD_BYTES, (byte) 0);
+        }
+        return record;
+    }
+
+    /*
+     * Returns the slot holding the DID, or -(slot + 1) of the slot to insert it at.
+     */
+    private int find(byte[] key, int hash) {
+        int free = -1;
+        for (int slot = hash & mask;; slot = (slot + 1) & mask) {
+            int position = slotPosition(slot);
+            int ref = index.getInt(position + 4);
+            if (ref == 0) {
+                return -((free < 0 ? slot : free) + 1);
+            }
+            if (ref == REMOVED) {
+                if (free < 0) {
+                    free = slot;
+                }
+            } else if (index.getInt(position) == hash && matches(ref - 1, key)) {
+                return slot;
+            }
+        }
+    }
+
+    private boolean matches(int record, byte[] key) {
+        ByteBuffer segment = segments.get(record / SEGMENT_RECORDS);
+        int position = (record % SEGMENT_RECORDS) * RECORD_BYTES;
+        if (segment.get(position + DID_LENGTH) != key.length) {
+            return false;
+        }
+        for (int i = 0; i < key.length; i++) {
+            if (segment.get(position + DID + i) != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int append(byte[] record) throws IOException {
+        int target = count;
+        if (target / SEGMENT_RECORDS == segments.size()) {
+            segments.add(mapSegment(segments.size()));
+        }
+
+        crc.reset();
+        crc.update(record, KIND, CRC - KIND);
+        crc.update(record, DID, RECORD_BYTES - DID);
+        ByteBuffer view = segments.get(target / SEGMENT_RECORDS).duplicate();
+        view.position((target % SEGMENT_RECORDS) * RECORD_BYTES);
+        view.put(record);
+        // the state is set last, a record is recovered only once it is complete
+        view.putInt(view.position() - RECORD_BYTES + CRC, (int) crc.getValue());
+        view.put(view.position() - RECORD_BYTES + STATE, LIVE);
+        count++;
+        return target;
+    }
+
+    private void read(int record, byte[] out) {
+        ByteBuffer view = segments.get(record / SEGMENT_RECORDS).duplicate();
+        view.position((record % SEGMENT_RECORDS) * RECORD_BYTES);
+        view.get(out);
+    }
+
+    private byte state(int record) {
+        return segments.get(record / SEGMENT_RECORDS).get((record % SEGMENT_RECORDS) * RECORD_BYTES + STATE);
+    }
+
+    private void setState(int record, byte state) {
+        segments.get(record / SEGMENT_RECORDS).put((record % SEGMENT_RECORDS) * RECORD_BYTES + STATE, state);
+    }
+
+    /*
+     * Checks the record read into the buffer against its checksum.
+     */
+    private boolean valid(byte[] record) {
+        if (record[STATE] == EMPTY || (record[DID_LENGTH] & 0xFF) > DID_BYTES) {
+            return false;
+        }
+        crc.reset();
+        crc.update(record, KIND, CRC - KIND);
+        crc.update(record, DID, RECORD_BYTES - DID);
+        return ByteBuffer.wrap(record).getInt(CRC) == (int) crc.getValue();
+    }
+
+    /*
+     * Maps the data file and reads the current header. Returns the number of records
+     * recovered beyond it.
+     */
+    private int openData() throws IOException {
+        if (!Files.exists(file)) {
+            try {
+                createPrivate(file);
+            } catch (FileAlreadyExistsException e) {
+                LOG.debug("Key store {} created concurrently", file);
+            }
+        }
+        channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        boolean created = channel.size() == 0;
+        header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+
+        if (created) {
+            epoch = ThreadLocalRandom.current().nextLong();
+            sequence = 0;
+            count = 0;
+            live = 0;
+            writeHeader(header, sequence, epoch, count, live);
+            header.force();
+        } else {
+            int base = currentSlot(header);
+            if (base < 0) {
+                throw new IOException(String.format("Invalid key store file %s", file));
+            }
+            sequence = header.getLong(base + 8);
+            epoch = header.getLong(base + 16);
+            count = (int) header.getLong(base + 24);
+            live = (int) header.getLong(base + 32);
+        }
+
+        segments.clear();
+        for (int i = 0; i * (long) SEGMENT_RECORDS < count; i++) {
+            segments.add(mapSegment(i));
+        }
+
+        // records appended after the last flush
+        int recovered = 0;
+        long size = channel.size();
+        while (HEADER_BYTES + (count + 1L) * RECORD_BYTES <= size) {
+            if (count / SEGMENT_RECORDS == segments.size()) {
+                segments.add(mapSegment(segments.size()));
+            }
+            read(count, buffer);
+            if (!valid(buffer)) {
+                break;
+            }
+            count++;
+            recovered++;
+        }
+        Arrays.fill(buffer, (byte) 0);
+        return recovered;
+    }
+
+    private MappedByteBuffer mapSegment(int segment) throws IOException {
+        long position = HEADER_BYTES + (long) segment * SEGMENT_RECORDS * RECORD_BYTES;
+        return channel.map(FileChannel.MapMode.READ_WRITE, position, (long) SEGMENT_RECORDS * RECORD_BYTES);
+    }
+
+    /*
+     * Opens the data file and its index, rebuilding the latter when it cannot be used.
+     * Closes the store if that fails.
+     */
+    private void reopen() throws IOException {
+        try {
+            int recovered = openData();
+            if (recovered > 0 || !openIndex()) {
+                LOG.debug("Rebuilding index of {}, {} records recovered", file, recovered);
+                rebuildIndex();
+            }
+        } catch (IOException | RuntimeException e) {
+            abandon(e);
+            throw e;
+        }
+    }
+
+    /*
+     * Maps the index if it is clean and matches the data file. The header is read rather
+     * than mapped, so a rejected index is not left mapped.
+     */
+    private boolean openIndex() throws IOException {
+        if (!Files.exists(indexFile)) {
+            return false;
+        }
+
+        FileChannel candidate = FileChannel.open(indexFile, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        boolean valid = false;
+        try {
+            if (candidate.size() < INDEX_HEADER_BYTES) {
+                return false;
+            }
+            ByteBuffer map = ByteBuffer.allocate(INDEX_HEADER_BYTES);
+            while (map.hasRemaining()) {
+                if (candidate.read(map, map.position()) < 0) {
+                    return false;
+                }
+            }
+            int slots = map.getInt(INDEX_SLOTS);
+            valid = map.getInt(0) == INDEX_MAGIC
+                    && map.getInt(4) == VERSION
+                    && map.getInt(INDEX_DIRTY) == 0
+                    && Integer.bitCount(slots) == 1
+                    && map.getLong(INDEX_EPOCH) == epoch
+                    && map.getLong(INDEX_COUNT) == count
+                    && candidate.size() == INDEX_HEADER_BYTES + (long) slots * INDEX_SLOT_BYTES;
+            if (!valid) {
+                return false;
+            }
+            indexChannel = candidate;
+            index = candidate.map(FileChannel.MapMode.READ_WRITE, 0, candidate.size());
+            mask = slots - 1;
+            used = (int) map.getLong(INDEX_USED);
+            return true;
+        } finally {
+            if (!valid) {
+                candidate.close();
+            }
+        }
+    }
+
+    /*
+     * Builds the index from the records, keeping the last record of a DID, and commits it.
+     */
+    private void rebuildIndex() throws IOException {
+        MappedByteBuffer previous = index;
+        FileChannel previousChannel = indexChannel;
+        index = null;
+        indexChannel = null;
+        Buffers.unmap(previous);
+        if (previousChannel != null) {
+            previousChannel.close();
+        }
+
+        createIndex(tableSize(count));
+        used = 0;
+        live = 0;
+        for (int record = 0; record < count; record++) {
+            if (state(record) != LIVE) {
+                continue;
+            }
+            read(record, buffer);
+            byte[] key = Arrays.copyOfRange(buffer, DID, DID + buffer[DID_LENGTH]);
+            int hash = hash(key);
+            int slot = find(key, hash);
+            if (slot >= 0) {
+                setState(index.getInt(slotPosition(slot) + 4) - 1, DELETED);
+            } else {
+                slot = -slot - 1;
+                used++;
+                live++;
+            }
+            index.putInt(slotPosition(slot), hash);
+            index.putInt(slotPosition(slot) + 4, record + 1);
+        }
+        Arrays.fill(buffer, (byte) 0);
+        installIndex();
+        dirty = true;
+        commit();
+    }
+
+    /*
+     * Moves the live slots to an index of the given size.
+     */
+    private void resize(int slots) throws IOException {
+        MappedByteBuffer previous = index;
+        FileChannel previousChannel = indexChannel;
+        int previousSlots = mask + 1;
+        index = null;
+        indexChannel = null;
+        try {
+            createIndex(slots);
+            used = 0;
+            for (int slot = 0; slot < previousSlots; slot++) {
+                int position = INDEX_HEADER_BYTES + slot * INDEX_SLOT_BYTES;
+                int ref = previous.getInt(position + 4);
+                if (ref == 0 || ref == REMOVED) {
+                    continue;
+                }
+                int hash = previous.getInt(position);
+                int target = hash & mask;
+                while (index.getInt(slotPosition(target) + 4) != 0) {
+                    target = (target + 1) & mask;
+                }
+                index.putInt(slotPosition(target), hash);
+                index.putInt(slotPosition(target) + 4, ref);
+                used++;
+            }
+        } finally {
+            Buffers.unmap(previous);
+            previousChannel.close();
+        }
+        installIndex();
+        dirty = true;
+        LOG.debug("Resized index of {} to {} slots", file, slots);
+    }
+
+    /*
+     * Creates an empty index of the given size next to the index file, marked dirty until
+     * the next commit. It replaces the index file once it is filled by {@link #installIndex()}.
+     */
+    private void createIndex(int slots) throws IOException {
+        Path temp = indexFile.resolveSibling(indexFile.getFileName() + ".tmp");
+        Files.deleteIfExists(temp);
+        createPrivate(temp);
+        indexChannel = FileChannel.open(temp, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        index = indexChannel.map(FileChannel.MapMode.READ_WRITE, 0, INDEX_HEADER_BYTES + (long) slots * INDEX_SLOT_BYTES);
+        index.putInt(0, INDEX_MAGIC);
+        index.putInt(4, VERSION);
+        index.putInt(INDEX_DIRTY, 1);
+        index.putInt(INDEX_SLOTS, slots);
+        index.putLong(INDEX_EPOCH, epoch);
+        mask = slots - 1;
+    }
+
+    /*
+     * Moves the index created by {@link #createIndex(int)} over the index file and maps it
+     * again. It is unmapped first, a mapped file cannot be replaced on Windows.
+     */
+    private void installIndex() throws IOException {
+        Path temp = indexFile.resolveSibling(indexFile.getFileName() + ".tmp");
+        index.force();
+        Buffers.unmap(index);
+        index = null;
+        indexChannel.close();
+        indexChannel = null;
+        Files.move(temp, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        indexChannel = FileChannel.open(indexFile, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        index = indexChannel.map(FileChannel.MapMode.READ_WRITE, 0, indexChannel.size());
+    }
+
+    private void markDirty() {
+        if (!dirty) {
+            index.putInt(INDEX_DIRTY, 1);
+            index.force();
+            dirty = true;
+        }
+    }
+
+    /*
+     * Forces the records, then the data header and last the index, which is clean again
+     * once everything before it is on disk.
+     */
+    private void commit() {
+        if (!dirty) {
+            return;
+        }
+        for (MappedByteBuffer segment : segments) {
+            segment.force();
+        }
+        sequence++;
+        writeHeader(header, sequence, epoch, count, live);
+        header.force();
+
+        index.putLong(INDEX_COUNT, count);
+        index.putLong(INDEX_USED, used);
+        index.force();
+        index.putInt(INDEX_DIRTY, 0);
+        index.force();
+        dirty = false;
+    }
+
+    /*
+     * Writes the live records into a new file and moves it over the data file. The store
+     * is unmapped for the move; if it fails, the original file is opened again.
+     */
+    private void compact0() throws IOException {
+        commit();
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.deleteIfExists(temp);
+        createPrivate(temp);
+        int written = 0;
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            ByteBuffer record = ByteBuffer.wrap(buffer);
+            for (int i = 0; i < count; i++) {
+                if (state(i) != LIVE) {
+                    continue;
+                }
+                read(i, buffer);
+                record.clear();
+                out.write(record, HEADER_BYTES + (long) written * RECORD_BYTES);
+                written++;
+            }
+
+            ByteBuffer start = ByteBuffer.allocate(HEADER_BYTES);
+            writeHeader(start, 0, ThreadLocalRandom.current().nextLong(), written, written);
+            out.write(start, 0);
+            out.force(true);
+        } catch (IOException | RuntimeException e) {
+            delete(temp, e);
+            throw e;
+        } finally {
+            Arrays.fill(buffer, (byte) 0);
+        }
+
+        int previous = count;
+        release();
+        try {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException e) {
+            LOG.warn("Failed to replace key store {}, reopening it", file);
+            delete(temp, e);
+            try {
+                reopen();
+            } catch (IOException | RuntimeException failure) {
+                e.addSuppressed(failure);
+            }
+            throw e;
+        }
+        reopen();
+        LOG.debug("Compacted key store {} from {} to {} records", file, previous, written);
+    }
+
+    /*
+     * Unmaps the files and closes them. The mapped buffers are released right away rather
+     * than when they are collected, so that the files can be replaced.
+     */
+    private void release() throws IOException {
+        for (MappedByteBuffer segment : segments) {
+            Buffers.unmap(segment);
+        }
+        segments.clear();
+        Buffers.unmap(header);
+        header = null;
+        Buffers.unmap(index);
+        index = null;
+
+        FileChannel data = channel;
+        FileChannel indexed = indexChannel;
+        channel = null;
+        indexChannel = null;
+        try {
+            if (data != null) {
+                data.close();
+            }
+        } finally {
+            if (indexed != null) {
+                indexed.close();
+            }
+        }
+    }
+
+    /*
+     * Closes the store after a failure that left it without usable files.
+     */
+    private void abandon(Exception cause) {
+        LOG.error("Closing key store {} after failure: {}", file, cause.getMessage());
+        closed = true;
+        try {
+            release();
+        } catch (IOException e) {
+            cause.addSuppressed(e);
+        }
+    }
+
+    private static void delete(Path path, Exception cause) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            cause.addSuppressed(e);
+        }
+    }
+
+    /*
+     * Creates the file readable and writable by its owner only where POSIX permissions are
+     * supported.
+     */
+    private static void createPrivate(Path path) throws IOException {
+        if (path.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+            Files.createFile(path, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+        } else {
+            Files.createFile(path);
+        }
+    }
+
+    private void ensureOpen() {
+        if (closed) {
+            throw new IllegalStateException(String.format("Key store %s is closed", file));
+        }
+    }
+
+    private static void writeHeader(ByteBuffer header, long sequence, long epoch, long count, long live) {
+        int base = (int) (sequence & 1) * SLOT_BYTES;
+        header.putInt(base, MAGIC);
+        header.putInt(base + 4, VERSION);
+        header.putLong(base + 8, sequence);
+        header.putLong(base + 16, epoch);
+        header.putLong(base + 24, count);
+        header.putLong(base + 32, live);
+        header.putInt(base + SLOT_CRC, checksum(header, base));
+    }
+
+    /*
+     * Returns the offset of the valid header slot with the highest sequence, or -1.
+     */
+    private static int currentSlot(ByteBuffer header) {
+        int current = -1;
+        for (int base = 0; base < HEADER_BYTES; base += SLOT_BYTES) {
+            boolean valid = header.getInt(base) == MAGIC
+                    && header.getInt(base + 4) == VERSION
+                    && header.getInt(base + SLOT_CRC) == checksum(header, base);
+            if (valid && (current < 0 || header.getLong(base + 8) > header.getLong(current + 8))) {
+                current = base;
+            }
+        }
+        return current;
+    }
+
+    private static int checksum(ByteBuffer header, int base) {
+        CRC32 checksum = new CRC32();
+        for (int i = base; i < base + SLOT_CRC; i++) {
+            checksum.update(header.get(i));
+        }
+        return (int) checksum.getValue();
+    }
+
+    private static boolean hasSignkey(byte[] record) {
+        for (int i = SIGNKEY; i < RECORD_BYTES; i++) {
+            if (record[i] != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String verkey(String did, String verkey) {
+        if (verkey == null) {
+            return null;
+        }
+        String full = Utils.buildFullVerkey(did, verkey);
+        int colon = full.indexOf(':');
+        return colon < 0 ? full : full.substring(0, colon);
+    }
+
+    private static void decode(String key, byte[] record, int offset, int length, String name) throws CryptoException {
+        if (key == null || Base58.decodedLength(key) != length) {
+            throw new CryptoException(String.format("Invalid %s, expected %d bytes", name, length));
+        }
+        Base58.decode(key, record, offset);
+    }
+
+    /*
+     * Returns the DID as stored in a record, or null if it does not fit.
+     */
+    private static byte[] key(String did) {
+        if (did == null || did.isEmpty()) {
+            return null;
+        }
+        byte[] key = did.getBytes(StandardCharsets.UTF_8);
+        return key.length > DID_BYTES ? null : key;
+    }
+
+    private static int hash(byte[] key) {
+        int hash = Arrays.hashCode(key) * 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    private static int slotPosition(int slot) {
+        return INDEX_HEADER_BYTES + slot * INDEX_SLOT_BYTES;
+    }
+
+    private static int tableSize(int entries) {
+        int slots = MIN_INDEX_SLOTS;
+        while (slots < entries * 2L) {
+            slots <<= 1;
+        }
+        return slots;
+    }
+}
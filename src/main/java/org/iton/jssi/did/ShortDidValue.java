@@ -25,18 +25,17 @@
 
 package org.iton.jssi.did;
 
-import org.bitcoinj.core.AddressFormatException;
-import org.bitcoinj.core.Base58;
+import org.iton.jssi.crypto.util.Validator;
 import org.iton.jssi.util.Qualifiable;
 import org.iton.jssi.util.Validatable;
 import org.iton.jssi.util.ValidateException;
 
-public class ShortDidValue extends Qualifiable<ShortDidValue> implements Validatable {
+public final class ShortDidValue extends Qualifiable<ShortDidValue> implements Validatable {
 
     private final static String PREFIX = "did";
 
     public ShortDidValue(String entity){
-        this.entity = entity;
+        super(entity);
     }
 
     @Override
@@ -51,13 +50,28 @@ public class ShortDidValue extends Qualifiable<ShortDidValue> implements Validat
 
     @Override
     public void validate() throws ValidateException {
-        try {
-            byte[] decoded = Base58.decode(entity);
-            if(decoded.length != 16 || decoded.length != 32){
-                throw new ValidateException(String.format(("Trying to use DID with unexpected length: %d. The 16- or 32-byte number upon which a DID is based should be 22/23 or 44/45 bytes when encoded as base58."), decoded.length));
-            }
-        } catch(AddressFormatException e){
-            throw new ValidateException(e.getMessage());
+        if(Validator.getDefault().isValidDid(entity)){
+            return;
         }
+        int length = Validator.decodedLength(entity);
+        if(length < 0){
+            throw new ValidateException(String.format("Trying to use DID with invalid base58 characters: %s", entity));
+        }
+        throw new ValidateException(String.format(("Trying to use DID with unexpected length: %d. The 16- or 32-byte number upon which a DID is based should be 22/23 or 44/45 bytes when encoded as base58."), length));
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return this == other || (other instanceof ShortDidValue && entity.equals(((ShortDidValue) other).entity));
+    }
+
+    @Override
+    public int hashCode() {
+        return entity.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return entity;
     }
 }
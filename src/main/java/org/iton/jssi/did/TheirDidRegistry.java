@@ -0,0 +1,220 @@
+/*
+ *
+ *  The MIT License
+ *
+ *  Copyright 2019 ITON Solutions.
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+
+package org.iton.jssi.did;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import org.iton.jssi.crypto.CryptoException;
+import org.iton.jssi.crypto.CryptoService;
+import org.iton.jssi.crypto.KeyHandle;
+import org.iton.jssi.crypto.Keys;
+import org.iton.jssi.crypto.util.BoundedCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Registry of the DIDs of known peers. A DID is resolved once, with the abbreviated verkey
+ * expanded and validated by {@link CryptoService#createTheirDid} and the verkey decoded into
+ * a {@link KeyHandle}; afterwards looking it up is a lock free read. Writes go to the bins
+ * of a concurrent map, and the least recently used entries are evicted (CLOCK) beyond the
+ * capacity. An optional loader is called for a DID that is not registered, e.g. to read it
+ * from a wallet; concurrent misses of one DID share a single load.
+ *
+ * @author ITON Solutions
+ */
+public class TheirDidRegistry {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TheirDidRegistry.class);
+
+    public static final int DEFAULT_CAPACITY = 0x10000;
+
+    private final CryptoService service;
+    private final BoundedCache<String, Entry> entries;
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final Map<String, CompletableFuture<Entry>> pending = new ConcurrentHashMap<>();
+    private volatile Function<String, TheirDidInfo> loader;
+
+    public TheirDidRegistry(CryptoService service) {
+        this(service, DEFAULT_CAPACITY);
+    }
+
+    public TheirDidRegistry(CryptoService service, int capacity) {
+        this.service = service;
+        this.entries = new BoundedCache<>(capacity);
+    }
+
+    /*
+     * Sets the callback resolving a DID missing from the registry, it returns null for an
+     * unknown DID. Pass null to disable loading.
+     */
+    public void setLoader(Function<String, TheirDidInfo> loader) {
+        this.loader = loader;
+    }
+
+    public Entry register(TheirDidInfo info) throws CryptoException {
+        Entry entry = resolve(info);
+        entries.put(entry.did.did, entry);
+        return entry;
+    }
+
+    /*
+     * Returns the entry of the DID, loading it if it is missing and a loader is set.
+     * Returns null for an unknown DID.
+     */
+    public Entry get(String did) throws CryptoException {
+        Entry entry = entries.get(did);
+        if (entry != null) {
+            return entry;
+        }
+
+        Function<String, TheirDidInfo> current = loader;
+        if (current == null) {
+            return null;
+        }
+
+        // concurrent misses of a DID wait for the first one instead of loading it again
+        CompletableFuture<Entry> future = new CompletableFuture<>();
+        CompletableFuture<Entry> running = pending.putIfAbsent(did, future);
+        if (running != null) {
+            return await(running);
+        }
+        try {
+            loads.increment();
+            Entry result;
+            try {
+                TheirDidInfo info = current.apply(did);
+                result = info == null ? null : register(info);
+            } catch (CryptoException | RuntimeException e) {
+                failures.increment();
+                LOG.warn("Cannot load their DID {}: {}", did, e.getMessage());
+                future.completeExceptionally(e);
+                throw e;
+            } catch (Error e) {
+                // waiting callers must not block forever
+                failures.increment();
+                future.completeExceptionally(e);
+                throw e;
+            }
+            future.complete(result);
+            return result;
+        } finally {
+            pending.remove(did, future);
+        }
+    }
+
+    public TheirDid getTheirDid(String did) throws CryptoException {
+        Entry entry = get(did);
+        return entry == null ? null : entry.did;
+    }
+
+    public KeyHandle getKey(String did) throws CryptoException {
+        Entry entry = get(did);
+        return entry == null ? null : entry.key;
+    }
+
+    public Entry remove(String did) {
+        return entries.remove(did);
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public long getHits() {
+        return entries.getHits();
+    }
+
+    public long getMisses() {
+        return entries.getMisses();
+    }
+
+    public long getEvictions() {
+        return entries.getEvictions();
+    }
+
+    public double getHitRate() {
+        return entries.getHitRate();
+    }
+
+    public long getLoads() {
+        return loads.sum();
+    }
+
+    public long getLoadFailures() {
+        return failures.sum();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("TheirDidRegistry: {size: %d, hit rate: %.3f, loads: %d}", size(), getHitRate(), getLoads());
+    }
+
+    private static Entry await(CompletableFuture<Entry> future) throws CryptoException {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof CryptoException) {
+                throw (CryptoException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw e;
+        }
+    }
+
+    private Entry resolve(TheirDidInfo info) throws CryptoException {
+        TheirDid did = service.createTheirDid(info);
+        return new Entry(did, service.createKeyHandle(new Keys(did.verkey, null)));
+    }
+
+    /*
+     * Resolved DID: the expanded verkey and its decoded key.
+     */
+    public static class Entry {
+
+        public final TheirDid did;
+        public final KeyHandle key;
+
+        Entry(TheirDid did, KeyHandle key) {
+            this.did = did;
+            this.key = key;
+        }
+    }
+}
@@ -25,14 +25,19 @@
 
 package org.iton.jssi.util;
 
-import java.lang.reflect.InvocationTargetException;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-
+/**
+ * Value that may be qualified as {@code prefix:method:id}, prefix and method being made of
+ * lower case letters and digits. The entity is parsed by hand in a single pass.
+ *
+ * @author ITON Solutions
+ */
 public abstract class Qualifiable<T> {
 
-    private static Pattern PATTERN = Pattern.compile("^[a-z0-9]+:([a-z0-9]+):(.*)$");
-    public String entity;
+    public final String entity;
+
+    protected Qualifiable(String entity) {
+        this.entity = entity;
+    }
 
     public abstract String getPrefix();
     public abstract T setMethod(String method);
@@ -42,28 +47,61 @@ public abstract class Qualifiable<T> {
     }
 
     public static String qualify(String prefix, String method, String id) {
-        return String.format("%s:%s:%s", prefix, method, id);
+        return new StringBuilder(prefix.length() + method.length() + id.length() + 2)
+                .append(prefix).append(':').append(method).append(':').append(id)
+                .toString();
     }
 
     public static String getMethod(String entity) {
-        Matcher matcher = PATTERN.matcher(entity);
-        if(matcher.find()) {
-            return matcher.group(1);
-        }
-        return null;
+        int end = methodEnd(entity);
+        return end < 0 ? null : entity.substring(entity.indexOf(':') + 1, end);
+    }
+
+    public boolean isFullyQualified() {
+        return methodEnd(entity) >= 0;
     }
 
     public boolean isFullyQualified(String entity) {
-        Matcher matcher = PATTERN.matcher(entity);
-        return matcher.matches();
+        return methodEnd(entity) >= 0;
     }
 
     public static String toUnqualified(String entity) {
-        Matcher matcher = PATTERN.matcher(entity);
-        if(matcher.find()) {
-            return matcher.group(2);
+        int end = methodEnd(entity);
+        return end < 0 ? entity : entity.substring(end + 1);
+    }
+
+    /*
+     * Offset of the ':' ending the method of a fully qualified entity, -1 if the entity
+     * is not fully qualified. The id may be empty but must be a single line.
+     */
+    protected static int methodEnd(String entity) {
+        int length = entity.length();
+        int i = 0;
+        while (i < length && isNameChar(entity.charAt(i))) {
+            i++;
+        }
+        if (i == 0 || i == length || entity.charAt(i) != ':') {
+            return -1;
+        }
+
+        int start = ++i;
+        while (i < length && isNameChar(entity.charAt(i))) {
+            i++;
         }
-        return entity;
+        if (i == start || i == length || entity.charAt(i) != ':') {
+            return -1;
+        }
+
+        for (int j = i + 1; j < length; j++) {
+            char c = entity.charAt(j);
+            if (c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029') {
+                return -1;
+            }
+        }
+        return i;
+    }
 
+    private static boolean isNameChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9');
     }
 }
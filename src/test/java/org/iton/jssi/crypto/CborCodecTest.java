@@ -0,0 +1,90 @@
+/*
+ *
+ *  The MIT License
+ *
+ *  Copyright 2019 ITON Solutions.
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+
+package org.iton.jssi.crypto;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CborCodecTest {
+
+    @Test
+    void testCryptoDetached() throws IOException {
+        CryptoDetachedBinary box = new CryptoDetachedBinary(new byte[100], new byte[12], new byte[16]);
+        box.cipher[0] = 1;
+        byte[] encoded = CborCodec.encode(box);
+
+        // raw byte strings, smaller than the Base64 fields alone
+        CryptoDetached base64 = box.toCryptoDetached();
+        assertTrue(encoded.length < base64.cipher.length() + base64.nonce.length() + base64.tag.length());
+
+        CryptoDetachedBinary result = CborCodec.readCryptoDetached(new ByteArrayInputStream(encoded));
+        assertArrayEquals(box.cipher, result.cipher);
+        assertArrayEquals(box.nonce, result.nonce);
+        assertArrayEquals(box.tag, result.tag);
+        assertArrayEquals(box.cipher, Base64.getDecoder().decode(base64.cipher));
+    }
+
+    @Test
+    void testSequence() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (JsonGenerator generator = CborCodec.FACTORY.createGenerator(out)) {
+            CborCodec.write(generator, new ComboBoxBinary(new byte[]{1, 2}, "sender", new byte[]{3}));
+            CborCodec.write(generator, new CryptoBox(new byte[]{4}, new byte[]{5, 6}));
+        }
+
+        try (JsonParser parser = CborCodec.FACTORY.createParser(out.toByteArray())) {
+            ComboBoxBinary combo = CborCodec.readComboBox(parser);
+            assertEquals("sender", combo.sender);
+            assertArrayEquals(new byte[]{1, 2}, combo.cipher);
+            CryptoBox box = CborCodec.readCryptoBox(parser);
+            assertArrayEquals(new byte[]{5, 6}, box.nonce);
+            assertNull(parser.nextToken());
+        }
+    }
+
+    @Test
+    void testEnvelope() throws IOException {
+        Map<String, Envelope.Recipient> recipients = new HashMap<>();
+        recipients.put("verkey1", new Envelope.Recipient(new byte[]{1}, null, null));
+        recipients.put("verkey2", new Envelope.Recipient(new byte[]{2}, new byte[]{3}, new byte[]{4}));
+        Envelope envelope = new Envelope(Envelope.AUTHCRYPT, new byte[]{5}, new byte[]{6}, new byte[]{7}, recipients);
+
+        Envelope result = CborCodec.readEnvelope(new ByteArrayInputStream(CborCodec.encode(envelope)));
+        assertEquals(Envelope.AUTHCRYPT, result.alg);
+        assertArrayEquals(new byte[]{7}, result.tag);
+        assertNull(result.recipients.get("verkey1").nonce);
+        assertArrayEquals(new byte[]{4}, result.recipients.get("verkey2").sender);
+    }
+}
@@ -25,7 +25,10 @@
 
 package org.iton.jssi.crypto;
 
+import org.iton.jssi.crypto.util.BoundedCache;
 import org.iton.jssi.did.Did;
+import org.iton.jssi.did.DidCodecs;
+import org.iton.jssi.did.DidRecordWriter;
 import org.iton.jssi.did.MyDidInfo;
 import org.iton.jssi.did.TheirDid;
 import org.iton.jssi.did.TheirDidInfo;
@@ -37,7 +40,23 @@ import org.junit.jupiter.api.function.Executable;
 import org.libsodium.jni.NaCl;
 import org.libsodium.jni.SodiumException;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Base64;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -184,6 +203,28 @@ class CryptoServiceTest {
         assertTrue(result);
     }
 
+    /**
+     * Test of sign and verify methods with a key cache, of class CryptoService.
+     * @throws org.libsodium.jni.SodiumException
+     * @throws org.iton.jssi.crypto.CryptoException
+     */
+    @Test
+    public void testVerifyKeyCache() throws SodiumException, CryptoException {
+
+        byte[] data = "Hola caracola".getBytes();
+
+        CryptoService instance = new CryptoService();
+        instance.setKeyCache(new BoundedCache<>(16));
+        Keys keys = instance.createKeys(null);
+        for (int i = 0; i < 3; i++) {
+            byte[] sign = instance.sign(data, keys);
+            assertTrue(instance.verify(data, sign, keys));
+        }
+        assertEquals(2, instance.getKeyCache().size());
+        assertEquals(2, instance.getKeyCache().getMisses());
+        assertEquals(4, instance.getKeyCache().getHits());
+    }
+
     /**
      * Test of verify method, of class CryptoService.
      * @throws org.libsodium.jni.SodiumException
@@ -220,6 +261,104 @@ class CryptoServiceTest {
         });
     }
 
+    /**
+     * Test of sign and verify methods with a key handle, of class CryptoService.
+     * @throws org.libsodium.jni.SodiumException
+     * @throws org.iton.jssi.crypto.CryptoException
+     */
+    @Test
+    public void testVerifyKeyHandle() throws SodiumException, CryptoException {
+
+        byte[] data = "Hola caracola".getBytes();
+
+        CryptoService instance = new CryptoService();
+        Keys keys = instance.createKeys(null);
+        KeyHandle handle = instance.createKeyHandle(keys);
+        byte[] sign = instance.sign(data, handle);
+        assertTrue(instance.verify(data, sign, handle));
+        assertTrue(instance.verify(data, sign, keys));
+    }
+
+    /**
+     * Test of sign and verify methods with byte buffers, of class CryptoService.
+     * @throws org.libsodium.jni.SodiumException
+     * @throws org.iton.jssi.crypto.CryptoException
+     */
+    @Test
+    public void testVerifyByteBuffer() throws SodiumException, CryptoException {
+
+        byte[] data = "Hola caracola".getBytes();
+
+        CryptoService instance = new CryptoService();
+        KeyHandle keys = instance.createKeyHandle(instance.createKeys(null));
+        ByteBuffer input = ByteBuffer.allocateDirect(data.length).put(data);
+        input.flip();
+        ByteBuffer sign = ByteBuffer.allocateDirect(1024);
+        instance.sign(input, keys, sign);
+        sign.flip();
+        assertTrue(instance.verify(input, sign, keys));
+
+        Assertions.assertThrows(BufferOverflowException.class, () -> {
+            instance.sign(input, keys, ByteBuffer.allocate(8));
+        });
+    }
+
+    /**
+     * Test of metrics recording, of class CryptoService.
+     * @throws org.libsodium.jni.SodiumException
+     * @throws org.iton.jssi.crypto.CryptoException
+     */
+    @Test
+    public void testMetrics() throws SodiumException, CryptoException {
+
+        byte[] data = "Hola caracola".getBytes();
+
+        CryptoService instance = new CryptoService();
+        InMemoryCryptoMetrics metrics = new InMemoryCryptoMetrics();
+        instance.setMetrics(metrics);
+        Keys keys = instance.createKeys(null);
+        byte[] sign = instance.sign(data, keys);
+        instance.verify(data, sign, keys);
+        keys.verkey = keys.verkey.split(":")[0] + ":bad type";
+        Assertions.assertThrows(CryptoException.class, () -> {
+            instance.verify(data, sign, keys);
+        });
+
+        assertEquals(1, metrics.getCount(CryptoMetrics.Operation.CREATE_KEYS));
+        assertEquals(1, metrics.getCount(CryptoMetrics.Operation.SIGN));
+        assertEquals(data.length, metrics.getBytes(CryptoMetrics.Operation.SIGN));
+        assertEquals(2, metrics.getCount(CryptoMetrics.Operation.VERIFY));
+        assertEquals(1, metrics.getErrors(CryptoMetrics.Operation.VERIFY));
+        assertTrue(metrics.getPercentile(CryptoMetrics.Operation.VERIFY, 100) > 0);
+    }
+
+    /**
+     * Test of verifyAll method, of class CryptoService.
+     * @throws org.libsodium.jni.SodiumException
+     * @throws org.iton.jssi.crypto.CryptoException
+     */
+    @Test
+    public void testVerifyAll() throws SodiumException, CryptoException {
+
+        byte[] data = "Hola caracola".getBytes();
+
+        CryptoService instance = new CryptoService();
+        Keys keys = instance.createKeys(null);
+        Keys other = instance.createKeys(null);
+
+        List<SignedItem> items = new ArrayList<>();
+        items.add(new SignedItem(data, instance.sign(data, keys), keys));
+        items.add(new SignedItem(data, instance.sign(data, other), keys));
+        items.add(new SignedItem(data, instance.sign(data, other), other));
+        items.add(new SignedItem(data, instance.sign(data, keys), new Keys(keys.verkey.split(":")[0] + ":bad type", null)));
+
+        BitSet result = instance.verifyAll(items);
+        assertTrue(result.get(0));
+        assertFalse(result.get(1));
+        assertTrue(result.get(2));
+        assertFalse(result.get(3));
+    }
+
     /**
      * Test of crypto_box method, of class CryptoService.
      * @throws org.libsodium.jni.SodiumException
@@ -288,6 +427,31 @@ class CryptoServiceTest {
         });
     }
 
+    /**
+     * Test of cryptoBox and cryptoBoxOpen methods with key handles, of class CryptoService.
+     * @throws org.libsodium.jni.SodiumException
+     * @throws org.iton.jssi.crypto.CryptoException
+     */
+    @Test
+    public void testCryptoBoxOpenKeyHandle() throws SodiumException, CryptoException {
+
+        byte[] data = "Hola caracola".getBytes();
+
+        CryptoService instance = new CryptoService();
+        Keys sender = instance.createKeys(null);
+        KeyHandle receiver = instance.createKeyHandle(new KeyInfo("00000000000000000000000000000My1"));
+        KeyHandle senderHandle = instance.createKeyHandle(sender);
+
+        CryptoBox box = instance.cryptoBox(data, senderHandle, receiver);
+        byte[] result = instance.cryptoBoxOpen(box.cipher, box.nonce, receiver.toKeys(), sender);
+        assertArrayEquals(result, data);
+
+        KeyHandle theirs = instance.createKeyHandle(new Keys(sender.verkey, null));
+        Assertions.assertThrows(CryptoException.class, () -> {
+            instance.cryptoBoxOpen(box.cipher, box.nonce, receiver, theirs);
+        });
+    }
+
     /**
      * Test of cryptoBoxSeal method, of class CryptoService.
      * @throws org.libsodium.jni.SodiumException
@@ -461,4 +625,228 @@ class CryptoServiceTest {
             instance.decryptPlaintext(result, add1, keys);
         });
     }
-}
\ No newline at end of file
+
+    /**
+     * Test of encryptStream and decryptStream methods, of class CryptoService.
+     * @throws org.libsodium.jni.SodiumException
+     * @throws java.io.IOException
+     */
+    @Test
+    public void testEncryptDecryptStream() throws SodiumException, IOException {
+
+        // spans several chunks and ends with a partial one
+        byte[] data = new byte[3 * CryptoOutputStream.DEFAULT_CHUNK_SIZE + 100];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+        }
+
+        CryptoService instance = new CryptoService();
+        Keys keys = instance.createKeys(null);
+
+        ByteArrayOutputStream cipher = new ByteArrayOutputStream();
+        try (OutputStream out = instance.encryptStream(cipher, keys)) {
+            out.write(data, 0, 1000);
+            out.write(data, 1000, data.length - 1000);
+        }
+
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        try (InputStream in = instance.decryptStream(new ByteArrayInputStream(cipher.toByteArray()), keys)) {
+            byte[] buffer = new byte[4096];
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                result.write(buffer, 0, n);
+            }
+        }
+        assertArrayEquals(data, result.toByteArray());
+    }
+
+    /**
+     * Test of decryptStream method with a truncated stream, of class CryptoService.
+     * @throws org.libsodium.jni.SodiumException
+     * @throws java.io.IOException
+     */
+    @Test
+    public void testDecryptStreamTruncated() throws SodiumException, IOException {
+
+        byte[] data = new byte[2 * CryptoOutputStream.DEFAULT_CHUNK_SIZE];
+
+        CryptoService instance = new CryptoService();
+        Keys keys = instance.createKeys(null);
+
+        ByteArrayOutputStream cipher = new ByteArrayOutputStream();
+        try (OutputStream out = instance.encryptStream(cipher, keys)) {
+            out.write(data);
+        }
+
+        byte[] truncated = Arrays.copyOf(cipher.toByteArray(), cipher.size() - 1);
+        Assertions.assertThrows(IOException.class, () -> {
+            try (InputStream in = instance.decryptStream(new ByteArrayInputStream(truncated), keys)) {
+                while (in.read() != -1) {
+                }
+            }
+        });
+    }
+
+    /**
+     * Test of signAsync and verifyAsync methods, of class AsyncCryptoService.
+     * @throws java.lang.Exception
+     */
+    @Test
+    public void testSignVerifyAsync() throws Exception {
+
+        byte[] data = "Hola caracola".getBytes();
+
+        CryptoService instance = new CryptoService();
+        Keys keys = instance.createKeys(null);
+        try (AsyncCryptoService async = new AsyncCryptoService(instance)) {
+            CompletableFuture<Boolean> verified = async.signAsync(data, keys)
+                    .thenCompose(sign -> async.verifyAsync(data, sign, keys));
+            assertTrue(verified.get());
+
+            keys.verkey = keys.verkey.split(":")[0] + ":bad type";
+            ExecutionException e = Assertions.assertThrows(ExecutionException.class, () -> {
+                async.signAsync(data, keys).get();
+            });
+            assertTrue(e.getCause() instanceof CryptoException);
+        }
+    }
+
+    /**
+     * Test of provision method, of class DidProvisioner.
+     * @throws java.lang.Exception
+     */
+    @Test
+    public void testProvision() throws Exception {
+
+        CryptoService instance = new CryptoService();
+        List<MyDidInfo> infos = IntStream.range(0, 100)
+                .mapToObj(i -> new MyDidInfo(null, String.format("%032d", i)))
+                .collect(Collectors.toList());
+
+        DidProvisioner provisioner = new DidProvisioner(instance);
+        provisioner.setWindowSize(32);
+        List<Pair<Did, Keys>> result = new ArrayList<>();
+        assertEquals(100, provisioner.provision(infos.iterator(), result::add));
+        for (int i = 0; i < infos.size(); i++) {
+            assertEquals(instance.createMyDid(infos.get(i)).first.did, result.get(i).first.did);
+        }
+
+        provisioner.setOrdered(false);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (DidRecordWriter<Pair<Did, Keys>> writer = DidRecordWriter.ndjson(out, DidCodecs.MY_DID)) {
+            assertEquals(100, provisioner.provision(infos.stream(), writer));
+        }
+        assertEquals(100, out.toString("UTF-8").split("\n").length);
+    }
+
+    /**
+     * Test of cryptoBoxSealAll method, of class CryptoService.
+     * @throws org.libsodium.jni.SodiumException
+     * @throws org.iton.jssi.crypto.CryptoException
+     */
+    @Test
+    public void testCryptoBoxSealAll() throws SodiumException, CryptoException {
+
+        byte[] data = "Hola caracola".getBytes();
+
+        CryptoService instance = new CryptoService();
+        List<Keys> keys = new ArrayList<>();
+        List<String> recipients = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            keys.add(instance.createKeys(null));
+            recipients.add(keys.get(i).verkey);
+        }
+        recipients.set(3, keys.get(3).verkey.split(":")[0] + ":bad type");
+
+        byte[][] out = new byte[recipients.size()][];
+        Map<Integer, Exception> errors = instance.cryptoBoxSealAll(recipients, data, out);
+
+        assertEquals(1, errors.size());
+        assertTrue(errors.get(3) instanceof CryptoException);
+        assertNull(out[3]);
+        for (int i = 0; i < out.length; i++) {
+            if (i != 3) {
+                assertArrayEquals(data, instance.cryptoBoxSealOpen(keys.get(i), out[i]));
+            }
+        }
+    }
+
+    /**
+     * Test of pack and unpack methods, of class CryptoService.
+     * @throws org.libsodium.jni.SodiumException
+     * @throws org.iton.jssi.crypto.CryptoException
+     */
+    @Test
+    public void testPackUnpack() throws SodiumException, CryptoException {
+
+        byte[] data = "Hola caracola".getBytes();
+
+        CryptoService instance = new CryptoService();
+        Keys sender = instance.createKeys(null);
+        List<Keys> keys = new ArrayList<>();
+        List<String> recipients = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            keys.add(instance.createKeys(null));
+            recipients.add(keys.get(i).verkey);
+        }
+
+        Envelope authcrypt = instance.pack(data, recipients, sender);
+        Envelope anoncrypt = instance.pack(data, recipients, null);
+        for (Keys key : keys) {
+            Pair<byte[], String> result = instance.unpack(authcrypt, key);
+            assertArrayEquals(data, result.first);
+            assertEquals(sender.verkey.split(":")[0], result.second);
+
+            result = instance.unpack(anoncrypt, key);
+            assertArrayEquals(data, result.first);
+            assertNull(result.second);
+        }
+
+        Assertions.assertThrows(CryptoException.class, () -> {
+            instance.unpack(authcrypt, sender);
+        });
+
+        // the recipients are authenticated with the payload
+        authcrypt.recipients.remove(keys.get(2).verkey.split(":")[0]);
+        Assertions.assertThrows(SodiumException.class, () -> {
+            instance.unpack(authcrypt, keys.get(0));
+        });
+    }
+
+    /**
+     * Test of the SecretKey variants of sign, cryptoBox, cryptoBoxOpen, cryptoBoxSealOpen
+     * and encryptPlaintextBinary, of class CryptoService.
+     * @throws org.libsodium.jni.SodiumException
+     * @throws org.iton.jssi.crypto.CryptoException
+     */
+    @Test
+    public void testSecretKey() throws SodiumException, CryptoException {
+
+        byte[] data = "Hola caracola".getBytes();
+
+        CryptoService instance = new CryptoService();
+        Keys keys = instance.createKeys(null);
+        Keys their = instance.createKeys(null);
+
+        try (SecretKey secret = SecretKey.from(keys); SecretKey theirs = SecretKey.from(their)) {
+            assertArrayEquals(instance.sign(data, keys), instance.sign(data, secret));
+
+            CryptoBox box = instance.cryptoBox(data, their, secret);
+            assertArrayEquals(data, instance.cryptoBoxOpen(box.cipher, box.nonce, keys, theirs));
+            assertArrayEquals(data, instance.cryptoBoxOpen(box.cipher, box.nonce, keys, their));
+
+            byte[] sealed = instance.cryptoBoxSeal(keys, data);
+            assertArrayEquals(data, instance.cryptoBoxSealOpen(secret, sealed));
+
+            CryptoDetachedBinary detached = instance.encryptPlaintextBinary(data, null, secret);
+            assertArrayEquals(data, instance.decryptPlaintextBinary(detached, null, keys));
+        }
+
+        SecretKey closed = SecretKey.from(keys);
+        closed.close();
+        assertTrue(closed.isClosed());
+        Assertions.assertThrows(IllegalStateException.class, () -> {
+            instance.sign(data, closed);
+        });
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ *
+ *  The MIT License
+ *
+ *  Copyright 2019 ITON Solutions.
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+
+package org.iton.jssi.crypto;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+import org.libsodium.jni.NaCl;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NonceSequencerTest {
+
+    public NonceSequencerTest(){
+        NaCl.sodium();
+    }
+
+    @Test
+    public void testUniqueConcurrent() {
+        NonceSequencer instance = new NonceSequencer();
+        Set<ByteBuffer> nonces = ConcurrentHashMap.newKeySet();
+        IntStream.range(0, 10000).parallel().forEach(i -> nonces.add(ByteBuffer.wrap(instance.next("key", 24))));
+        assertEquals(10000, nonces.size());
+        assertEquals(10000, instance.getCount("key"));
+        assertEquals(0, instance.getCount("other"));
+    }
+
+    @Test
+    public void testResume() throws IOException {
+        Path file = Files.createTempDirectory("nonce").resolve("nonces");
+
+        byte[] last;
+        try (NonceSequencer instance = new NonceSequencer(file)) {
+            instance.next("key", 24);
+            last = instance.next("key", 24);
+        }
+        assertTrue(Files.exists(file));
+
+        try (NonceSequencer instance = new NonceSequencer(file)) {
+            // the state file is consumed on load
+            assertFalse(Files.exists(file));
+            byte[] next = instance.next("key", 24);
+            assertArrayEquals(Arrays.copyOf(last, 16), Arrays.copyOf(next, 16));
+            assertEquals(2, next[23]);
+        }
+    }
+
+    @Test
+    public void testClosed() throws IOException {
+        Path file = Files.createTempDirectory("nonce").resolve("nonces");
+
+        NonceSequencer instance = new NonceSequencer(file);
+        instance.next("key", 24);
+        instance.close();
+        // after closing nonces are random and not counted
+        instance.next("key", 24);
+        assertEquals(1, instance.getCount("key"));
+        assertThrows(IllegalArgumentException.class, () -> instance.next("key", 12));
+
+        try (NonceSequencer resumed = new NonceSequencer(file)) {
+            assertEquals(1, resumed.getCount("key"));
+        }
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ *
+ *  The MIT License
+ *
+ *  Copyright 2019 ITON Solutions.
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+
+package org.iton.jssi.crypto.algorithm;
+
+import org.iton.jssi.crypto.algorithm.ICrypto.CryptoType;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CryptoFactoryTest {
+
+    @Test
+    void testGetCryptoShared() {
+        ICrypto crypto = CryptoFactory.getCrypto();
+        assertSame(crypto, CryptoFactory.getCrypto("ed25519"));
+        assertSame(crypto, CryptoFactory.getCrypto("ED25519"));
+        assertSame(crypto, CryptoFactory.getCrypto(CryptoType.DEFAULT_CRYPTO_TYPE));
+    }
+
+    @Test
+    void testGetCryptoUnknown() {
+        assertNull(CryptoFactory.getCrypto("bad type"));
+        assertNull(CryptoFactory.getCrypto((String) null));
+    }
+
+    @Test
+    void testRegister() {
+        ICrypto previous = CryptoFactory.getCrypto();
+        Ed25519 crypto = new Ed25519();
+        try {
+            CryptoFactory.register(crypto);
+            assertSame(crypto, CryptoFactory.getCrypto("ed25519"));
+        } finally {
+            CryptoFactory.register(previous);
+        }
+    }
+}
@@ -36,6 +36,9 @@ import org.libsodium.jni.SodiumException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.nio.ByteBuffer;
+import java.util.BitSet;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 class Ed25519Test {
@@ -97,6 +100,32 @@ class Ed25519Test {
         assertTrue(result);
     }
 
+    @Test
+    void testVerifyAll() throws SodiumException, CryptoException {
+        Ed25519 instance = new Ed25519();
+        Keys keys = instance.createKeys(null);
+        byte[] pk = Base58.decode(keys.verkey);
+        byte[] sk = Base58.decode(keys.signkey);
+
+        // large enough to be split across the fork-join pool
+        int size = 1000;
+        byte[][] data = new byte[size][];
+        byte[][] signatures = new byte[size][];
+        byte[][] pks = new byte[size][];
+        for (int i = 0; i < size; i++) {
+            data[i] = ("Hola caracola " + i).getBytes();
+            signatures[i] = instance.sign(data[i], sk);
+            pks[i] = pk;
+        }
+        signatures[10] = instance.sign("Adios caracola".getBytes(), sk);
+        pks[20] = null;
+
+        BitSet result = instance.verifyAll(data, signatures, pks);
+        assertEquals(size - 2, result.cardinality());
+        assertFalse(result.get(10));
+        assertFalse(result.get(20));
+    }
+
     @Test
     void testGenNonce() {
     }
@@ -136,6 +165,21 @@ class Ed25519Test {
         assertArrayEquals(data, result);
     }
 
+    @Test
+    void testCryptoBoxOpenSamePeers() throws SodiumException {
+        Ed25519 instance = new Ed25519();
+        Keys sender = instance.createKeys(null);
+        Keys receiver = instance.createKeys(null);
+        // the second and later messages use the cached Curve25519 peer keys
+        for (int i = 0; i < 3; i++) {
+            byte[] data = ("Hola caracola " + i).getBytes();
+            byte[] nonce = instance.genNonce();
+            byte[] cipher = instance.cryptoBox(data, nonce, Base58.decode(receiver.verkey), Base58.decode(sender.signkey));
+            byte[] result = instance.cryptoBoxOpen(cipher, nonce, Base58.decode(sender.verkey), Base58.decode(receiver.signkey));
+            assertArrayEquals(data, result);
+        }
+    }
+
     @Test
     void cryptoBoxSeal() {
     }
@@ -151,6 +195,49 @@ class Ed25519Test {
 
     }
 
+    @Test
+    void testCryptoBoxSealOpenDirectBuffer() throws SodiumException {
+        byte[] data = "Hola caracola".getBytes();
+        Ed25519 instance = new Ed25519();
+        Keys keys = instance.createKeys(null);
+        ByteBuffer pk = ByteBuffer.allocateDirect(32).put(Base58.decode(keys.verkey));
+        pk.flip();
+        ByteBuffer sk = ByteBuffer.wrap(Base58.decode(keys.signkey));
+
+        ByteBuffer input = ByteBuffer.allocateDirect(data.length).put(data);
+        input.flip();
+        ByteBuffer cipher = ByteBuffer.allocateDirect(1024);
+        int written = instance.cryptoBoxSeal(input, pk, cipher);
+        assertEquals(written, cipher.position());
+        assertEquals(0, input.position());
+        cipher.flip();
+
+        ByteBuffer result = ByteBuffer.allocateDirect(1024);
+        written = instance.cryptoBoxSealOpen(cipher, pk, sk, result);
+        assertEquals(data.length, written);
+        result.flip();
+        byte[] bytes = new byte[written];
+        result.get(bytes);
+        assertArrayEquals(data, bytes);
+    }
+
+    @Test
+    void testCreateKeysPool() throws SodiumException, CryptoException {
+        byte[] data = "Hola caracola".getBytes();
+        Ed25519 instance = new Ed25519();
+        try (KeyPairPool pool = new KeyPairPool(4, 16)) {
+            instance.setKeyPairPool(pool);
+            for (int i = 0; i < 32; i++) {
+                Keys keys = instance.createKeys(null);
+                byte[] sign = instance.sign(data, Base58.decode(keys.signkey));
+                assertTrue(instance.verify(data, sign, Base58.decode(keys.verkey)));
+            }
+            assertEquals(32, pool.getHits() + pool.getMisses());
+            assertEquals(0, pool.getFailures());
+        }
+        assertThrows(IllegalArgumentException.class, () -> new KeyPairPool(0, 16));
+    }
+
     @Test
     void getType() {
     }
@@ -158,4 +245,4 @@ class Ed25519Test {
     @Test
     void testValidateKey() {
     }
-}
\ No newline at end of file
+}
\ No newline at end of file
@@ -0,0 +1,99 @@
+/*
+ *
+ *  The MIT License
+ *
+ *  Copyright 2019 ITON Solutions.
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.iton.jssi.crypto.util;
+
+import java.util.Arrays;
+import java.util.Random;
+import org.bitcoinj.core.AddressFormatException;
+import org.iton.jssi.crypto.Keys;
+import org.iton.jssi.crypto.SecretKey;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class Base58Test {
+
+    @Test
+    void testEncodeDecode() {
+        Random random = new Random(58);
+        for (int i = 0; i < 2000; i++) {
+            byte[] bytes = new byte[random.nextInt(100)];
+            random.nextBytes(bytes);
+            Arrays.fill(bytes, 0, Math.min(bytes.length, random.nextInt(4)), (byte) 0);
+
+            String expected = org.bitcoinj.core.Base58.encode(bytes);
+            assertEquals(expected, Base58.encode(bytes));
+            assertArrayEquals(bytes, Base58.decode(expected));
+            assertEquals(bytes.length, Base58.decodedLength(expected));
+        }
+    }
+
+    @Test
+    void testScratchCleared() throws Exception {
+        byte[] verkey = new byte[32];
+        byte[] signkey = new byte[64];
+        Random random = new Random(64);
+        random.nextBytes(verkey);
+        random.nextBytes(signkey);
+
+        String encoded = Base58.encode(signkey);
+        assertTrue(Base58.isScratchClear());
+        try (SecretKey secret = SecretKey.from(new Keys(Base58.encode(verkey), encoded))) {
+            assertEquals(64, secret.length());
+            assertTrue(Base58.isScratchClear());
+        }
+        assertEquals(64, Base58.decode(encoded).length);
+        assertEquals(64, Base58.decodedLength(encoded));
+        assertTrue(Base58.isScratchClear());
+
+        // larger inputs replace the scratch arrays
+        byte[] large = new byte[1024];
+        random.nextBytes(large);
+        assertArrayEquals(large, Base58.decode(Base58.encode(large)));
+        assertTrue(Base58.isScratchClear());
+        assertThrows(AddressFormatException.InvalidCharacter.class, () -> Base58.decode(encoded + "0"));
+        assertTrue(Base58.isScratchClear());
+    }
+
+    @Test
+    void testDecodeInto() {
+        byte[] key = new byte[32];
+        new Random(32).nextBytes(key);
+        String encoded = Base58.encode(key);
+
+        byte[] out = new byte[40];
+        assertEquals(32, Base58.decode(encoded, out, 8));
+        assertArrayEquals(key, Arrays.copyOfRange(out, 8, 40));
+        assertThrows(AddressFormatException.InvalidDataLength.class, () -> Base58.decode(encoded, out, 9));
+    }
+
+    @Test
+    void testInvalidCharacter() {
+        AddressFormatException.InvalidCharacter e = assertThrows(AddressFormatException.InvalidCharacter.class, () -> Base58.decode("abc0"));
+        assertEquals('0', e.character);
+        assertEquals(3, e.position);
+        assertEquals(-1, Base58.decodedLength("abcl"));
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ *
+ *  The MIT License
+ *
+ *  Copyright 2019 ITON Solutions.
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+
+package org.iton.jssi.crypto.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BoundedCacheTest {
+
+    @Test
+    void testGetLoads() {
+        BoundedCache<String, Integer> instance = new BoundedCache<>(4);
+        assertEquals(Integer.valueOf(3), instance.get("abc", String::length));
+        assertEquals(Integer.valueOf(3), instance.get("abc", key -> { throw new AssertionError("loaded twice"); }));
+        assertEquals(1, instance.getHits());
+        assertEquals(1, instance.getMisses());
+    }
+
+    @Test
+    void testCapacity() {
+        BoundedCache<Integer, Integer> instance = new BoundedCache<>(16);
+        for (int i = 0; i < 100; i++) {
+            instance.put(i, i);
+        }
+        assertEquals(16, instance.size());
+        assertEquals(84, instance.getEvictions());
+    }
+
+    @Test
+    void testSecondChance() {
+        BoundedCache<Integer, Integer> instance = new BoundedCache<>(2);
+        instance.put(1, 1);
+        instance.put(2, 2);
+        instance.get(1);
+        instance.put(3, 3);
+        assertNotNull(instance.get(1));
+        assertNull(instance.get(2));
+        assertNotNull(instance.get(3));
+    }
+
+    @Test
+    void testRemove() {
+        BoundedCache<Integer, Integer> instance = new BoundedCache<>(2);
+        instance.put(1, 1);
+        assertEquals(Integer.valueOf(1), instance.remove(1));
+        assertNull(instance.get(1));
+        assertEquals(0, instance.size());
+    }
+
+    @Test
+    void testQueueBounded() {
+        BoundedCache<Integer, Integer> instance = new BoundedCache<>(64);
+        for (int i = 0; i < 10000; i++) {
+            instance.put(i % 8, i);
+            instance.put(i % 8, i + 1);
+            instance.remove(i % 8);
+        }
+        assertEquals(0, instance.size());
+        assertTrue(instance.queueSize() <= 64, "queue size " + instance.queueSize());
+
+        instance.put(1, 1);
+        instance.put(1, 2);
+        assertEquals(Integer.valueOf(2), instance.get(1));
+        assertTrue(instance.queueSize() <= 64);
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ *
+ *  The MIT License
+ *
+ *  Copyright 2019 ITON Solutions.
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+
+package org.iton.jssi.crypto.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HistogramTest {
+
+    @Test
+    void testPercentile() {
+        Histogram instance = new Histogram();
+        for (long i = 1; i <= 1000; i++) {
+            instance.record(i * 1000);
+        }
+        assertEquals(1000, instance.getCount());
+        assertEquals(1000000, instance.getMax());
+        assertEquals(500500.0, instance.getMean());
+        // buckets are exact to 1/8 of the value
+        long p50 = instance.getPercentile(50);
+        assertTrue(p50 >= 500000 && p50 <= 500000 + 500000 / Histogram.SUB_BUCKETS, String.valueOf(p50));
+        assertEquals(1000000, instance.getPercentile(100));
+    }
+
+    @Test
+    void testSmallValues() {
+        Histogram instance = new Histogram();
+        instance.record(0);
+        instance.record(3);
+        instance.record(-1);
+        assertEquals(0, instance.getPercentile(50));
+        assertEquals(3, instance.getPercentile(100));
+    }
+
+    @Test
+    void testReset() {
+        Histogram instance = new Histogram();
+        instance.record(Long.MAX_VALUE);
+        instance.reset();
+        assertEquals(0, instance.getCount());
+        assertEquals(0, instance.getPercentile(99));
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ *
+ *  The MIT License
+ *
+ *  Copyright 2019 ITON Solutions.
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.iton.jssi.crypto.util;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UtilsTest {
+
+    @Test
+    void testHex() {
+        byte[] bytes = new byte[256];
+        new Random(16).nextBytes(bytes);
+        StringBuilder expected = new StringBuilder();
+        for (byte b : bytes) {
+            expected.append(String.format("%02x", b));
+        }
+
+        assertEquals(expected.toString(), Utils.toHex(bytes));
+        assertEquals(expected.toString(), Utils.appendHex(new StringBuilder(), bytes).toString());
+        assertArrayEquals(bytes, Utils.toBytes(expected.toString()));
+        assertArrayEquals(bytes, Utils.toBytes(expected.toString().toUpperCase()));
+    }
+
+    @Test
+    void testParseHexInvalid() {
+        byte[] out = new byte[4];
+        assertEquals(2, Utils.parseHex("00ff", 0, 4, out, 0));
+        assertEquals(-1, Utils.parseHex("00f", 0, 3, out, 0));
+        assertEquals(-1, Utils.parseHex("00fg", 0, 4, out, 0));
+        assertFalse(Utils.isHex("0x00"));
+        assertThrows(NumberFormatException.class, () -> Utils.toBytes("zz"));
+    }
+
+    @Test
+    void testConcatByteBuffer() {
+        ByteBuffer out = ByteBuffer.allocate(5);
+        Utils.concat(out, new byte[]{1, 2}, new byte[]{}, new byte[]{3});
+        assertEquals(3, out.position());
+        assertThrows(BufferOverflowException.class, () -> Utils.concat(out, new byte[]{4, 5, 6}));
+        assertEquals(3, out.position());
+        assertArrayEquals(new byte[]{1, 2, 3, 0, 0}, out.array());
+    }
+}
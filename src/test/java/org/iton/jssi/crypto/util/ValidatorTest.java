@@ -0,0 +1,73 @@
+/*
+ *
+ *  The MIT License
+ *
+ *  Copyright 2019 ITON Solutions.
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+
+package org.iton.jssi.crypto.util;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ValidatorTest {
+
+    @Test
+    void testValidDid() {
+        Validator instance = new Validator(16);
+        String did = Base58.encode(new byte[16]);
+        String longDid = Base58.encode(new byte[32]);
+
+        assertTrue(instance.isValidDid("NcYxiDXkpYi6ov5FcYDi1e"));
+        assertTrue(instance.isValidDid(did));
+        assertTrue(instance.isValidDid(longDid));
+        assertFalse(instance.isValidDid(Base58.encode(new byte[20])));
+        assertFalse(instance.isValidDid("NcYxiDXkpYi6ov5FcYDi10"));
+        assertFalse(instance.isValidDid(null));
+
+        // only valid values are cached
+        assertEquals(3, instance.getDidCache().size());
+        assertTrue(instance.isValidDid(did));
+        assertEquals(1, instance.getDidCache().getHits());
+    }
+
+    @Test
+    void testValidVerkey() {
+        Validator instance = new Validator(16);
+        byte[] key = new byte[32];
+        key[0] = 1;
+
+        assertTrue(instance.isValidVerkey(Base58.encode(key)));
+        assertTrue(instance.isValidVerkey("~" + Base58.encode(Arrays.copyOf(key, 16))));
+        assertFalse(instance.isValidVerkey(Base58.encode(Arrays.copyOf(key, 16))));
+        assertFalse(instance.isValidVerkey("~" + Base58.encode(key)));
+    }
+
+    @Test
+    void testValidateAll() {
+        Validator instance = new Validator(16);
+        BitSet result = instance.validateAll(Arrays.asList("NcYxiDXkpYi6ov5FcYDi1e", "bad0", null, Base58.encode(new byte[32])));
+        assertEquals(BitSet.valueOf(new long[]{0b1001}), result);
+    }
+}
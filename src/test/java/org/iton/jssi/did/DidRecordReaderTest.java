@@ -0,0 +1,95 @@
+/*
+ *
+ *  The MIT License
+ *
+ *  Copyright 2019 ITON Solutions.
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+
+package org.iton.jssi.did;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import org.iton.jssi.crypto.Keys;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DidRecordReaderTest {
+
+    @Test
+    void testNdjson() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (DidRecordWriter<TheirDid> writer = DidRecordWriter.ndjson(out, DidCodecs.THEIR_DID)) {
+            for (int i = 0; i < 1000; i++) {
+                writer.write(new TheirDid("did" + i, i % 2 == 0 ? "verkey" + i : null));
+            }
+        }
+        assertEquals("{\"did\":\"did0\",\"verkey\":\"verkey0\"}", out.toString("UTF-8").split("\n")[0]);
+
+        List<TheirDid> result = new ArrayList<>();
+        try (DidRecordReader<TheirDid> reader = DidRecordReader.ndjson(new ByteArrayInputStream(out.toByteArray()), DidCodecs.THEIR_DID)) {
+            reader.forEachRemaining(result::add);
+        }
+        assertEquals(1000, result.size());
+        assertEquals("did999", result.get(999).did);
+        assertNull(result.get(999).verkey);
+
+        // chunks smaller than a line
+        List<TheirDid> parallel = new ArrayList<>();
+        assertEquals(1000, DidRecordReader.parallel(new ByteArrayInputStream(out.toByteArray()), DidCodecs.THEIR_DID, 16, parallel::add));
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(result.get(i).did, parallel.get(i).did);
+        }
+    }
+
+    @Test
+    void testCbor() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (DidRecordWriter<Keys> writer = DidRecordWriter.cbor(out, DidCodecs.KEYS)) {
+            writer.write(new Keys("verkey1", "signkey1"));
+            writer.write(new Keys("verkey2", null));
+        }
+
+        try (DidRecordReader<Keys> reader = DidRecordReader.cbor(new ByteArrayInputStream(out.toByteArray()), DidCodecs.KEYS)) {
+            assertEquals("signkey1", reader.next().signkey);
+            assertNull(reader.next().signkey);
+            assertFalse(reader.hasNext());
+        }
+    }
+
+    @Test
+    void testMyDidInfo() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (DidRecordWriter<MyDidInfo> writer = DidRecordWriter.ndjson(out, DidCodecs.MY_DID_INFO)) {
+            writer.write(new MyDidInfo(null, "seed", null, true));
+        }
+
+        try (DidRecordReader<MyDidInfo> reader = DidRecordReader.ndjson(new ByteArrayInputStream(out.toByteArray()), DidCodecs.MY_DID_INFO)) {
+            MyDidInfo info = reader.next();
+            assertEquals("seed", info.seed);
+            assertEquals("ed25519", info.cryptoType);
+            assertTrue(info.cid);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ *
+ *  The MIT License
+ *
+ *  Copyright 2019 ITON Solutions.
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+
+package org.iton.jssi.did;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.iton.jssi.util.Qualifiable;
+import org.iton.jssi.util.ValidateException;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DidValueTest {
+
+    @Test
+    void testParse() {
+        DidValue did = new DidValue("did:sov:NcYxiDXkpYi6ov5FcYDi1e");
+        assertTrue(did.isFullyQualified());
+        assertEquals("did", did.getPrefix());
+        assertEquals("sov", did.getMethod());
+        assertEquals("NcYxiDXkpYi6ov5FcYDi1e", did.getId());
+        assertTrue(did.isAbbreviatable());
+        assertEquals(new DidValue("NcYxiDXkpYi6ov5FcYDi1e"), did.toUnqualified());
+        assertEquals(did, DidValue.create("sov", "NcYxiDXkpYi6ov5FcYDi1e"));
+        assertEquals(did.hashCode(), new DidValue(did.entity).hashCode());
+
+        DidValue unqualified = new DidValue("NcYxiDXkpYi6ov5FcYDi1e");
+        assertFalse(unqualified.isFullyQualified());
+        assertNull(unqualified.getMethod());
+        assertSame(unqualified, unqualified.toUnqualified());
+        assertFalse(new DidValue("did:peer:1zQm").isAbbreviatable());
+    }
+
+    @Test
+    void testSameAsRegex() {
+        Pattern pattern = Pattern.compile("^[a-z0-9]+:([a-z0-9]+):(.*)$");
+        String[] entities = {"did:sov:abc", "did:sov:", "did::abc", ":sov:abc", "did:Sov:abc", "did:sov",
+            "did:sov:a:b", "DID:sov:abc", "did:sov:a\nb", "", "abc", "did1:s0v:x y"};
+        for (String entity : entities) {
+            Matcher matcher = pattern.matcher(entity);
+            boolean matches = matcher.matches();
+            DidValue did = new DidValue(entity);
+            assertEquals(matches, did.isFullyQualified(), entity);
+            assertEquals(matches ? matcher.group(1) : null, did.getMethod(), entity);
+            assertEquals(matches ? matcher.group(2) : entity, Qualifiable.toUnqualified(entity), entity);
+        }
+    }
+
+    @Test
+    void testIntern() {
+        String entity = "did:sov:NcYxiDXkpYi6ov5FcYDi1e";
+        DidValue did = DidValue.intern(entity);
+        assertSame(did, DidValue.intern(new String(entity)));
+        assertNotSame(did, DidValue.intern("did:sov:other"));
+    }
+
+    @Test
+    void testValidate() throws ValidateException {
+        new DidValue("NcYxiDXkpYi6ov5FcYDi1e").validate();
+        new DidValue("did:sov:anything").validate();
+        new ShortDidValue("NcYxiDXkpYi6ov5FcYDi1e").validate();
+        assertThrows(ValidateException.class, () -> new DidValue("NcYxiDXkpYi6ov5FcYDi").validate());
+        assertThrows(ValidateException.class, () -> new ShortDidValue("NcYxiDXkpYi6ov5FcYDi10").validate());
+    }
+}
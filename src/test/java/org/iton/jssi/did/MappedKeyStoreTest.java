@@ -0,0 +1,159 @@
+/*
+ *
+ *  The MIT License
+ *
+ *  Copyright 2019 ITON Solutions.
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+
+package org.iton.jssi.did;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Random;
+import org.iton.jssi.crypto.CryptoException;
+import org.iton.jssi.crypto.Keys;
+import org.iton.jssi.crypto.util.Base58;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class MappedKeyStoreTest {
+
+    private final Random random = new Random(1);
+
+    @TempDir
+    Path folder;
+
+    @Test
+    void testPutGet() throws Exception {
+        Path file = folder.resolve("wallet.dat");
+        Keys keys = keys();
+        Did did = new Did(did(), keys.verkey);
+        TheirDid their = new TheirDid("8wZcEriaNLNKtteJvx7f8i", "~NcYxiDXkpYi6ov5FcYDi1e");
+
+        try (MappedKeyStore instance = new MappedKeyStore(file)) {
+            instance.put(did, keys);
+            instance.put(their);
+            assertEquals(2, instance.size());
+        }
+
+        try (MappedKeyStore instance = new MappedKeyStore(file)) {
+            assertEquals(2, instance.size());
+            assertEquals(keys.verkey, instance.getDid(did.did).verkey);
+            assertEquals(keys.signkey, instance.getKeys(did.did).signkey);
+            assertEquals("5L2HBnzbu6Auh2pkDRbFt5f4prvgE2LzknkuYLsKkacp", instance.getTheirDid(their.did).verkey);
+            assertNull(instance.getKeys(their.did).signkey);
+            assertNull(instance.getDid(their.did));
+            assertNull(instance.getTheirDid(did.did));
+            assertEquals(32, instance.getVerkey(their.did).length);
+        }
+    }
+
+    @Test
+    void testInvalid() throws Exception {
+        try (MappedKeyStore instance = new MappedKeyStore(folder.resolve("wallet.dat"))) {
+            assertThrows(CryptoException.class, () -> instance.put(new TheirDid(did(), "abc")));
+            assertThrows(CryptoException.class, () -> instance.put(new Did(did(), keys().verkey), new Keys(null, "abc")));
+            assertEquals(0, instance.size());
+        }
+    }
+
+    @Test
+    void testRemoveCompact() throws Exception {
+        Path file = folder.resolve("wallet.dat");
+        String[] dids = new String[3000];
+
+        try (MappedKeyStore instance = new MappedKeyStore(file)) {
+            for (int i = 0; i < dids.length; i++) {
+                dids[i] = did();
+                instance.put(new TheirDid(dids[i], keys().verkey));
+            }
+            Keys keys = keys();
+            instance.put(new TheirDid(dids[0], keys.verkey));
+            for (int i = 1; i < dids.length; i += 2) {
+                assertTrue(instance.remove(dids[i]));
+            }
+            assertFalse(instance.remove(dids[1]));
+            assertEquals(keys.verkey, instance.getTheirDid(dids[0]).verkey);
+            assertEquals(dids.length / 2, instance.size());
+            assertEquals(dids.length + 1, instance.getRecordCount());
+
+            instance.compact();
+            assertEquals(dids.length / 2, instance.getRecordCount());
+            assertEquals(keys.verkey, instance.getTheirDid(dids[0]).verkey);
+        }
+
+        try (MappedKeyStore instance = new MappedKeyStore(file)) {
+            assertEquals(dids.length / 2, instance.size());
+            for (int i = 0; i < dids.length; i++) {
+                assertEquals(i % 2 == 0, instance.contains(dids[i]));
+            }
+        }
+    }
+
+    @Test
+    void testRecover() throws Exception {
+        Path file = folder.resolve("wallet.dat");
+        TheirDid first = new TheirDid(did(), keys().verkey);
+        TheirDid second = new TheirDid(did(), keys().verkey);
+
+        // the second store sees the file as left by a crash of the first one
+        MappedKeyStore crashed = new MappedKeyStore(file);
+        crashed.put(first);
+        crashed.flush();
+        crashed.put(second);
+
+        try (MappedKeyStore instance = new MappedKeyStore(file)) {
+            assertEquals(2, instance.size());
+            assertEquals(second.verkey, instance.getTheirDid(second.did).verkey);
+        }
+    }
+
+    @Test
+    void testPermissions() throws Exception {
+        assumeTrue(folder.getFileSystem().supportedFileAttributeViews().contains("posix"));
+        Path file = folder.resolve("wallet.dat");
+
+        try (MappedKeyStore instance = new MappedKeyStore(file)) {
+            instance.put(new Did(did(), keys().verkey), keys());
+            instance.compact();
+        }
+        assertEquals("rw-------", PosixFilePermissions.toString(Files.getPosixFilePermissions(file)));
+        assertEquals("rw-------", PosixFilePermissions.toString(Files.getPosixFilePermissions(folder.resolve("wallet.dat.idx"))));
+    }
+
+    private String did() {
+        byte[] bytes = new byte[16];
+        random.nextBytes(bytes);
+        return Base58.encode(bytes);
+    }
+
+    private Keys keys() {
+        byte[] verkey = new byte[32];
+        byte[] signkey = new byte[64];
+        random.nextBytes(verkey);
+        random.nextBytes(signkey);
+        return new Keys(Base58.encode(verkey), Base58.encode(signkey));
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ *
+ *  The MIT License
+ *
+ *  Copyright 2019 ITON Solutions.
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+
+package org.iton.jssi.did;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import org.iton.jssi.crypto.CryptoException;
+import org.iton.jssi.crypto.CryptoService;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TheirDidRegistryTest {
+
+    private static final String DID = "8wZcEriaNLNKtteJvx7f8i";
+    private static final String VERKEY = "5L2HBnzbu6Auh2pkDRbFt5f4prvgE2LzknkuYLsKkacp";
+
+    @Test
+    void testRegister() throws CryptoException {
+        TheirDidRegistry instance = new TheirDidRegistry(new CryptoService());
+        instance.register(new TheirDidInfo(DID, "~NcYxiDXkpYi6ov5FcYDi1e"));
+
+        TheirDidRegistry.Entry entry = instance.get(DID);
+        assertEquals(VERKEY, entry.did.verkey);
+        assertEquals(32, entry.key.getVerkey().length);
+        assertNull(instance.get("unknown"));
+        assertEquals(0.5, instance.getHitRate());
+    }
+
+    @Test
+    void testLoader() throws CryptoException {
+        AtomicInteger loads = new AtomicInteger();
+        TheirDidRegistry instance = new TheirDidRegistry(new CryptoService(), 1);
+        instance.setLoader(did -> {
+            loads.incrementAndGet();
+            return did.equals(DID) ? new TheirDidInfo(DID, VERKEY) : null;
+        });
+
+        assertEquals(VERKEY, instance.getTheirDid(DID).verkey);
+        assertEquals(VERKEY, instance.getTheirDid(DID).verkey);
+        assertNull(instance.getKey("unknown"));
+        assertEquals(2, loads.get());
+        assertEquals(1, instance.size());
+    }
+
+    @Test
+    void testLoaderCoalesced() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        TheirDidRegistry instance = new TheirDidRegistry(new CryptoService());
+        instance.setLoader(did -> {
+            loads.incrementAndGet();
+            try {
+                Thread.sleep(200);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return new TheirDidInfo(DID, VERKEY);
+        });
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<TheirDid>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return instance.getTheirDid(DID);
+                }));
+            }
+            start.countDown();
+            for (Future<TheirDid> result : results) {
+                assertEquals(VERKEY, result.get().verkey);
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void testLoaderFailure() {
+        TheirDidRegistry instance = new TheirDidRegistry(new CryptoService());
+        instance.setLoader(did -> {
+            throw new IllegalStateException("wallet closed");
+        });
+        assertThrows(IllegalStateException.class, () -> instance.get(DID));
+        assertEquals(1, instance.getLoadFailures());
+    }
+
+    @Test
+    void testLoaderError() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        TheirDidRegistry instance = new TheirDidRegistry(new CryptoService());
+        instance.setLoader(did -> {
+            loading.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            throw new AssertionError("loader broken");
+        });
+
+        AtomicReference<Throwable> first = new AtomicReference<>();
+        AtomicReference<Throwable> second = new AtomicReference<>();
+        Thread loader = new Thread(() -> call(instance, first));
+        loader.start();
+        assertTrue(loading.await(5, TimeUnit.SECONDS));
+        Thread waiter = new Thread(() -> call(instance, second));
+        waiter.start();
+        while (waiter.getState() != Thread.State.WAITING) {
+            Thread.sleep(1);
+        }
+        release.countDown();
+
+        loader.join(5000);
+        waiter.join(5000);
+        assertFalse(waiter.isAlive());
+        assertTrue(first.get() instanceof AssertionError);
+        assertTrue(second.get() instanceof AssertionError);
+        assertEquals(1, instance.getLoads());
+        assertEquals(1, instance.getLoadFailures());
+    }
+
+    private static void call(TheirDidRegistry instance, AtomicReference<Throwable> failure) {
+        try {
+            instance.get(DID);
+        } catch (Throwable t) {
+            failure.set(t);
+        }
+    }
+}